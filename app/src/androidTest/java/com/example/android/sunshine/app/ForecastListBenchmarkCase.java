@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SyncResult;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.ViewTreeObserver;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.FixtureForecastSource;
+import com.example.android.sunshine.app.sync.OwmFixtures;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Base of the forecast list benchmarks: syncs a recorded forecast of NUM_DAYS days before each
+    test, and measures how long a launch of MainActivity takes to draw its first forecast rows.
+ */
+public abstract class ForecastListBenchmarkCase extends ActivityInstrumentationTestCase2<MainActivity> {
+    protected static final int NUM_DAYS = 14;
+
+    public ForecastListBenchmarkCase() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        long now = System.currentTimeMillis() / 1000;
+        long stepSeconds = 3 * 60 * 60;
+        SunshineSyncAdapter.setForecastSource(new FixtureForecastSource(
+                Collections.singletonMap(FixtureForecastSource.DEFAULT_FIXTURE,
+                        OwmFixtures.dailyForecast(NUM_DAYS)),
+                Collections.singletonMap(FixtureForecastSource.DEFAULT_FIXTURE,
+                        OwmFixtures.hourlyForecast(now - now % stepSeconds, 40))));
+        new SunshineSyncAdapter(getInstrumentation().getTargetContext(), false)
+                .onPerformSync(null, new Bundle(), WeatherContract.CONTENT_AUTHORITY, null,
+                        new SyncResult());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SunshineSyncAdapter.setForecastSource(null);
+        super.tearDown();
+    }
+
+    /**
+     * Launches the activity and waits for its forecast list to draw a frame with rows in it.
+     *
+     * @return the milliseconds from the launch to that frame.
+     */
+    protected long launchToFirstRows() throws Throwable {
+        final long launched = SystemClock.elapsedRealtime();
+        final RecyclerView recyclerView = getForecastList();
+
+        final long[] firstRows = new long[1];
+        final CountDownLatch shown = new CountDownLatch(1);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (recyclerView.getChildCount() > 0) {
+                    // Drawn with rows before the launch returned, so this is an upper bound
+                    firstRows[0] = SystemClock.elapsedRealtime();
+                    shown.countDown();
+                    return;
+                }
+                recyclerView.getViewTreeObserver().addOnPreDrawListener(
+                        new ViewTreeObserver.OnPreDrawListener() {
+                            @Override
+                            public boolean onPreDraw() {
+                                if (recyclerView.getChildCount() > 0) {
+                                    recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                                    firstRows[0] = SystemClock.elapsedRealtime();
+                                    shown.countDown();
+                                }
+                                return true;
+                            }
+                        });
+            }
+        });
+        assertTrue("Error: The forecast list never showed a row", shown.await(10, TimeUnit.SECONDS));
+        return firstRows[0] - launched;
+    }
+
+    protected RecyclerView getForecastList() {
+        return (RecyclerView) getActivity().findViewById(R.id.recyclerview_forecast);
+    }
+}
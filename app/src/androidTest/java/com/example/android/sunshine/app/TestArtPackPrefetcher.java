@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestArtPackPrefetcher extends AndroidTestCase {
+    // Nothing listens there, so fetches fail fast without waiting on a network
+    private static final String UNREACHABLE_ART_PACK = "http://127.0.0.1:1/art_%s.png";
+
+    private static final int[] SIZE_CLASSES = {
+            WeatherArtCache.SIZE_LIST,
+            WeatherArtCache.SIZE_LARGE,
+            WeatherArtCache.SIZE_NOTIFICATION,
+            WeatherArtCache.SIZE_WEARABLE
+    };
+
+    private String mArtPack;
+    private ContentObserver mObserver;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mArtPack = prefs.getString(mContext.getString(R.string.pref_art_pack_key), null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String key = mContext.getString(R.string.pref_art_pack_key);
+        if (mArtPack != null) {
+            prefs.edit().putString(key, mArtPack).commit();
+        } else {
+            prefs.edit().remove(key).commit();
+        }
+        super.tearDown();
+    }
+
+    private void setArtPack(String artPack) {
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putString(mContext.getString(R.string.pref_art_pack_key), artPack).commit();
+    }
+
+    public void testPrefetchMakesEveryBindAMemoryHit() {
+        // The bundled pack, the one that loads without a network
+        setArtPack(mContext.getString(R.string.pref_art_pack_sunshine));
+        ArtPackPrefetcher.prefetch(mContext);
+        new PollingCheck(30000) {
+            @Override
+            protected boolean check() {
+                return ArtPackPrefetcher.isReady(mContext);
+            }
+        }.run();
+
+        WeatherArtCache cache = WeatherArtCache.getInstance(mContext);
+        // Every condition the API reports, not just one per art name
+        for (int weatherId = 200; weatherId <= 962; weatherId++) {
+            if (Utility.getArtNameForWeatherCondition(weatherId) == null) {
+                continue;
+            }
+            for (int sizeClass : SIZE_CLASSES) {
+                assertNotNull("Error: No art in memory for condition " + weatherId
+                        + " at size class " + sizeClass, cache.getFromMemory(weatherId, sizeClass));
+            }
+        }
+    }
+
+    // A pack whose own art can't be fetched is never ready, but the lists still hear when the
+    // pack changes and when its prefetch gives up.
+    public void testFailedPrefetchIsNotReadyButNotifies() {
+        final AtomicInteger changes = observeWeatherLists();
+        try {
+            setArtPack(UNREACHABLE_ART_PACK + "?" + System.nanoTime());
+            ArtPackPrefetcher.prefetch(mContext);
+            new PollingCheck(30000) {
+                @Override
+                protected boolean check() {
+                    return changes.get() >= 2;
+                }
+            }.run();
+            assertFalse("Error: Stand-in art should not make a pack ready",
+                    ArtPackPrefetcher.isReady(mContext));
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+        }
+    }
+
+    public void testSupersededPrefetchIsNotReady() {
+        final AtomicInteger changes = observeWeatherLists();
+        try {
+            String first = mContext.getString(R.string.pref_art_pack_sunshine);
+            setArtPack(first);
+            ArtPackPrefetcher.prefetch(mContext);
+            setArtPack(UNREACHABLE_ART_PACK + "?" + System.nanoTime());
+            ArtPackPrefetcher.prefetch(mContext);
+
+            // Both packs changing, and the second prefetch ending
+            new PollingCheck(30000) {
+                @Override
+                protected boolean check() {
+                    return changes.get() >= 3;
+                }
+            }.run();
+            // The first pack would have been ready, had it stayed selected
+            setArtPack(first);
+            assertFalse(ArtPackPrefetcher.isReady(mContext));
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+        }
+    }
+
+    private AtomicInteger observeWeatherLists() {
+        final AtomicInteger changes = new AtomicInteger();
+        // No handler: changes are counted on the thread that delivers them
+        mObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+        return changes;
+    }
+}
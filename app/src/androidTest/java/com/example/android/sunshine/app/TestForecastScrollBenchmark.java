@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Launches the forecast list over a recorded forecast and scrolls it up and down a fixed
+    distance every frame, logging how long the first frame with rows took and how long the
+    frames of the scroll took.  Thresholds depend too much on the device to assert on; compare
+    the logged numbers across runs on the same one.
+ */
+public class TestForecastScrollBenchmark extends ForecastListBenchmarkCase {
+    public static final String LOG_TAG = TestForecastScrollBenchmark.class.getSimpleName();
+
+    private static final int SCROLL_FRAMES = 300;
+    // Pixels scrolled per frame, about a fast fling's speed
+    private static final int SCROLL_STEP_DP = 24;
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void testScrollFrameTimes() throws Throwable {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // Frame times come from Choreographer
+            return;
+        }
+
+        long firstFrameMillis = launchToFirstRows();
+        final MainActivity activity = getActivity();
+        final RecyclerView recyclerView = getForecastList();
+
+        // Steady state: scroll a fixed step every frame, turning around at either end
+        final long[] frameNanos = new long[SCROLL_FRAMES + 1];
+        final CountDownLatch scrolled = new CountDownLatch(1);
+        final int step = (int) (SCROLL_STEP_DP * activity.getResources().getDisplayMetrics().density);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private int mFrame;
+                    private int mDirection = 1;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        frameNanos[mFrame++] = frameTimeNanos;
+                        if (mFrame > SCROLL_FRAMES) {
+                            scrolled.countDown();
+                            return;
+                        }
+                        if (!recyclerView.canScrollVertically(mDirection)) {
+                            mDirection = -mDirection;
+                        }
+                        recyclerView.scrollBy(0, mDirection * step);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+        assertTrue("Error: The scroll never finished", scrolled.await(60, TimeUnit.SECONDS));
+
+        long[] intervals = new long[SCROLL_FRAMES];
+        int janky = 0;
+        for (int i = 0; i < SCROLL_FRAMES; i++) {
+            intervals[i] = frameNanos[i + 1] - frameNanos[i];
+            // A frame that took long enough to skip a vsync
+            if (intervals[i] > FRAME_NANOS * 3 / 2) {
+                janky++;
+            }
+        }
+        Arrays.sort(intervals);
+        Log.i(LOG_TAG, "First frame with rows " + firstFrameMillis + "ms after launch; "
+                + SCROLL_FRAMES + " scroll frames: p50=" + millis(intervals, 50)
+                + "ms, p90=" + millis(intervals, 90) + "ms, p99=" + millis(intervals, 99)
+                + "ms, max=" + millis(intervals, 100) + "ms, " + janky + " janky");
+        assertTrue("Error: The list should hold the recorded forecast",
+                recyclerView.getAdapter().getItemCount() >= NUM_DAYS - 1);
+    }
+
+    private static float millis(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return sorted[index] / 1000000f;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TestItemChoiceManager extends AndroidTestCase {
+    public static final String LOG_TAG = TestItemChoiceManager.class.getSimpleName();
+
+    private static final int LARGE_LIST = 100000;
+    private static final int BENCHMARK_RUNS = 5;
+
+    /*
+        An adapter over an array of stable ids, with views that cost nothing to bind.
+     */
+    private static class IdAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        long[] mIds;
+
+        IdAdapter(long[] ids) {
+            setHasStableIds(true);
+            mIds = ids;
+        }
+
+        void setIds(long[] ids) {
+            mIds = ids;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mIds[position];
+        }
+
+        @Override
+        public int getItemCount() {
+            return mIds.length;
+        }
+    }
+
+    private static long[] sequentialIds(long first, int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    public void testLongIntMapMatchesHashMap() {
+        Random random = new Random(47);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 200000; i++) {
+            // A narrow key range, so removes hit and probe runs collide
+            long key = random.nextInt(4096) - 2048;
+            switch (random.nextInt(3)) {
+                case 0:
+                    map.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                    break;
+                default:
+                    Integer value = expected.get(key);
+                    assertEquals(value != null ? value : -1, map.get(key, -1));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), -1));
+        }
+    }
+
+    public void testCheckedItemsFollowTheirIds() {
+        IdAdapter adapter = new IdAdapter(sequentialIds(100, 50));
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        icm.setItemChecked(3, true);
+        icm.setItemChecked(10, true);
+
+        // Two rows inserted at the front: both checked items move down with their ids
+        long[] shifted = new long[52];
+        shifted[0] = 1;
+        shifted[1] = 2;
+        System.arraycopy(sequentialIds(100, 50), 0, shifted, 2, 50);
+        adapter.setIds(shifted);
+        assertTrue(icm.isItemChecked(5));
+        assertTrue(icm.isItemChecked(12));
+        assertFalse(icm.isItemChecked(3));
+        assertEquals(5, icm.getSelectedItemPosition());
+
+        // Every row replaced with a new id, as a sync does: the checks keep their positions
+        adapter.setIds(sequentialIds(1000, 52));
+        assertTrue(icm.isItemChecked(5));
+        assertTrue(icm.isItemChecked(12));
+        assertEquals(5, icm.getSelectedItemPosition());
+
+        // A list too short for a checked position drops it
+        adapter.setIds(sequentialIds(1000, 8));
+        assertTrue(icm.isItemChecked(5));
+        assertEquals(1, icm.mCheckedKeys.size());
+    }
+
+    public void testSingleChoiceSurvivesSaveAndRestore() {
+        IdAdapter adapter = new IdAdapter(sequentialIds(1, 20));
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        icm.setItemChecked(4, true);
+        icm.setItemChecked(7, true);
+        assertFalse("Error: Single choice should uncheck the previous item", icm.isItemChecked(4));
+        assertTrue(icm.isItemChecked(7));
+
+        Bundle state = new Bundle();
+        icm.onSaveInstanceState(state);
+        ItemChoiceManager restored = new ItemChoiceManager(adapter);
+        restored.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        restored.onRestoreInstanceState(state);
+        assertTrue(restored.isItemChecked(7));
+        assertEquals(7, restored.getSelectedItemPosition());
+    }
+
+    /*
+        Checks every tenth item of a large list, then times a bind pass over the whole list and
+        a data set change that moves every checked item.
+     */
+    public void testLargeListBenchmark() {
+        IdAdapter adapter = new IdAdapter(sequentialIds(1, LARGE_LIST));
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        for (int position = 0; position < LARGE_LIST; position += 10) {
+            icm.setItemChecked(position, true);
+        }
+        RecyclerView.ViewHolder holder = adapter.onCreateViewHolder(
+                new RecyclerView(mContext), 0);
+
+        long bindNanos = Long.MAX_VALUE;
+        long changeNanos = Long.MAX_VALUE;
+        long first = 1;
+        for (int run = 0; run < BENCHMARK_RUNS; run++) {
+            long start = System.nanoTime();
+            for (int position = 0; position < LARGE_LIST; position++) {
+                icm.onBindViewHolder(holder, position);
+            }
+            bindNanos = Math.min(bindNanos, System.nanoTime() - start);
+
+            // One row inserted at the front moves every item down by one
+            long[] ids = new long[LARGE_LIST + run + 1];
+            for (int i = 0; i <= run; i++) {
+                ids[i] = -1 - i;
+            }
+            System.arraycopy(sequentialIds(first, LARGE_LIST), 0, ids, run + 1, LARGE_LIST);
+            start = System.nanoTime();
+            adapter.setIds(ids);
+            changeNanos = Math.min(changeNanos, System.nanoTime() - start);
+
+            assertTrue(icm.isItemChecked(run + 1));
+            assertFalse(icm.isItemChecked(run + 2));
+        }
+        assertEquals(LARGE_LIST / 10, icm.mCheckedKeys.size());
+
+        Log.i(LOG_TAG, LARGE_LIST + " items, " + icm.mCheckedKeys.size() + " checked: bind pass "
+                + (bindNanos / 1000) + "us (" + (bindNanos / LARGE_LIST) + "ns/item), "
+                + "data set change " + (changeNanos / 1000) + "us");
+    }
+}
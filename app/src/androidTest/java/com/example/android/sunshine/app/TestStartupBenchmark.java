@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/*
+    Launches MainActivity over a recorded forecast and logs the time to the first frame with
+    forecast rows in it, with and without the snapshot the sync leaves behind.  The process is
+    already running, so this measures the activity's part of a launch, which is the part the
+    snapshot changes.
+ */
+public class TestStartupBenchmark extends ForecastListBenchmarkCase {
+    public static final String LOG_TAG = TestStartupBenchmark.class.getSimpleName();
+
+    public void testSyncWritesSnapshot() {
+        Cursor snapshot = ForecastSnapshot.read(getInstrumentation().getTargetContext(),
+                Utility.getPreferredLocation(getInstrumentation().getTargetContext()),
+                ForecastFragment.FORECAST_COLUMNS);
+        assertNotNull("Error: The sync should have written a snapshot", snapshot);
+        try {
+            assertTrue(snapshot.getCount() > 0);
+            assertTrue(snapshot.moveToFirst());
+            long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+            assertTrue(snapshot.getLong(ForecastFragment.COL_WEATHER_DATE) >= today);
+            assertTrue(snapshot.getLong(ForecastFragment.COL_WEATHER_ID) > 0);
+        } finally {
+            snapshot.close();
+        }
+
+        // Another location's list doesn't get this one's snapshot
+        assertNull(ForecastSnapshot.read(getInstrumentation().getTargetContext(),
+                "elsewhere", ForecastFragment.FORECAST_COLUMNS));
+    }
+
+    public void testFirstContentWithSnapshot() throws Throwable {
+        Log.i(LOG_TAG, "With snapshot: first content " + launchToFirstRows() + "ms after launch");
+    }
+
+    public void testFirstContentWithoutSnapshot() throws Throwable {
+        ForecastSnapshot.delete(getInstrumentation().getTargetContext());
+        Log.i(LOG_TAG, "Without snapshot: first content " + launchToFirstRows() + "ms after launch");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestWeatherArtCache extends AndroidTestCase {
+    // Nothing listens there, so loads fail fast without waiting on a network
+    private static final String UNREACHABLE_ART_PACK = "http://127.0.0.1:1/art_%s.png";
+    private static final int WEATHER_ID = 802;  // clouds
+
+    private String mArtPack;
+    private WeatherArtCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String key = mContext.getString(R.string.pref_art_pack_key);
+        mArtPack = prefs.getString(key, null);
+        // The bundled pack loads without a network; start from empty tiers
+        prefs.edit().putString(key, mContext.getString(R.string.pref_art_pack_sunshine)).commit();
+        mCache = WeatherArtCache.getInstance(mContext);
+        mCache.trimMemory();
+        File[] files = new File(mContext.getCacheDir(), "weather_art").listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String key = mContext.getString(R.string.pref_art_pack_key);
+        if (mArtPack != null) {
+            prefs.edit().putString(key, mArtPack).commit();
+        } else {
+            prefs.edit().remove(key).commit();
+        }
+        super.tearDown();
+    }
+
+    public void testLoadThenGetCached() throws InterruptedException {
+        int sizeClass = WeatherArtCache.SIZE_NOTIFICATION;
+        // A fresh art pack has nothing cached, and getCached() doesn't go and fetch it
+        assertNull(mCache.getCached(WEATHER_ID, sizeClass));
+
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicReference<Bitmap> loadedArt = new AtomicReference<Bitmap>();
+        // The callback comes on the main thread, which this test doesn't run on
+        mCache.load(WEATHER_ID, sizeClass, new WeatherArtCache.Callback() {
+            @Override
+            public void onArtLoaded(Bitmap art) {
+                loadedArt.set(art);
+                loaded.countDown();
+            }
+        });
+        assertTrue("Error: The art was never loaded", loaded.await(30, TimeUnit.SECONDS));
+        assertNotNull(loadedArt.get());
+
+        Bitmap icon = mCache.getCached(WEATHER_ID, sizeClass);
+        assertSame("Error: The memory tier should hand out the loaded bitmap", loadedArt.get(), icon);
+        int[] size = mCache.getSize(sizeClass);
+        assertTrue("Error: The cached art should be scaled to the size class",
+                icon.getWidth() <= size[0] && icon.getHeight() <= size[1]);
+
+        // Conditions sharing the art share the variant, others don't
+        assertSame(icon, mCache.getCached(804, sizeClass));
+        assertNull(mCache.getCached(500, sizeClass));
+        // and neither do other size classes
+        assertNull(mCache.getCached(WEATHER_ID, WeatherArtCache.SIZE_WEARABLE));
+    }
+
+    public void testDiskTierSurvivesMemory() {
+        Bitmap art = mCache.get(WEATHER_ID, WeatherArtCache.SIZE_LIST);
+        assertNotNull(art);
+
+        mCache.trimMemory();
+        assertNull(mCache.getFromMemory(WEATHER_ID, WeatherArtCache.SIZE_LIST));
+
+        Bitmap fromDisk = mCache.getCached(WEATHER_ID, WeatherArtCache.SIZE_LIST);
+        assertNotNull("Error: The art should have been read back from disk", fromDisk);
+        assertEquals(art.getWidth(), fromDisk.getWidth());
+        assertEquals(art.getHeight(), fromDisk.getHeight());
+        assertTrue("Error: The art should come back from disk unchanged", art.sameAs(fromDisk));
+    }
+
+    // Bundled art handed out because the pack's URL failed must not be cached as the pack's art,
+    // or the pack would never be fetched again.
+    public void testFallbackIsNotCached() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        prefs.edit().putString(mContext.getString(R.string.pref_art_pack_key),
+                UNREACHABLE_ART_PACK + "?" + System.nanoTime()).commit();
+
+        assertNotNull("Error: The bundled art should stand in for the unreachable pack",
+                mCache.get(WEATHER_ID, WeatherArtCache.SIZE_LIST));
+        assertNull("Error: The stand-in should be in neither the memory nor the disk tier",
+                mCache.getCached(WEATHER_ID, WeatherArtCache.SIZE_LIST));
+    }
+
+    public void testConcurrentRequestsShareOneLoad() throws InterruptedException {
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final Bitmap[] results = new Bitmap[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results[index] = mCache.get(WEATHER_ID, WeatherArtCache.SIZE_LARGE);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue("Error: The art was never loaded", done.await(30, TimeUnit.SECONDS));
+
+        assertNotNull(results[0]);
+        for (int i = 1; i < threads; i++) {
+            assertSame("Error: Every request should get the one decoded bitmap",
+                    results[0], results[i]);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Builds the same large history with REAL and with fixed point measurement columns and logs
+    the database size, the pages a location's history spans and what reading it costs.  Android's
+    SQLite has no page read counter, so pages per query are estimated from the table's page
+    count.  Cursor windows hold every number in eight bytes whatever its storage class, so their
+    size is logged for comparison only.
+ */
+public class TestFixedPointStorage extends AndroidTestCase {
+    public static final String LOG_TAG = TestFixedPointStorage.class.getSimpleName();
+
+    private static final String REAL_DATABASE = "test_weather_real.db";
+    private static final String FIXED_DATABASE = "test_weather_fixed.db";
+
+    private static final int NUM_LOCATIONS = 20;
+    private static final int DAYS_PER_LOCATION = 1000;
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final long FIRST_DATE = WeatherContract.normalizeDate(1419033600000L);
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(REAL_DATABASE);
+        mContext.deleteDatabase(FIXED_DATABASE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(REAL_DATABASE);
+        mContext.deleteDatabase(FIXED_DATABASE);
+        super.tearDown();
+    }
+
+    private static ContentValues createDay(long locationId, int day) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + day * DAY_IN_MILLIS);
+        values.put(WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, 11.25 + day % 3);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, 21.75 + day % 4);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 60 + day % 30);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1013.25 - (day % 10) * 0.5);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 2.57 + day % 7);
+        values.put(WeatherEntry.COLUMN_DEGREES, (day * 45) % 360);
+        return values;
+    }
+
+    private SQLiteDatabase fill(String name, boolean fixedPoint) {
+        SQLiteDatabase db = new WeatherDbHelper(mContext, name, fixedPoint).getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int location = 1; location <= NUM_LOCATIONS; location++) {
+                for (int day = 0; day < DAYS_PER_LOCATION; day++) {
+                    ContentValues values = createDay(location, day);
+                    db.insert(WeatherEntry.TABLE_NAME, null,
+                            fixedPoint ? WeatherEntry.encodeFixedPoint(values) : values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("VACUUM");
+        return db;
+    }
+
+    public void testStorageComparison() {
+        SQLiteDatabase realDb = fill(REAL_DATABASE, false);
+        SQLiteDatabase fixedDb = fill(FIXED_DATABASE, true);
+        try {
+            long realPages = DatabaseUtils.longForQuery(realDb, "PRAGMA page_count", null);
+            long fixedPages = DatabaseUtils.longForQuery(fixedDb, "PRAGMA page_count", null);
+            report("REAL", REAL_DATABASE, realDb, realPages, PROJECTION);
+            report("fixed point", FIXED_DATABASE, fixedDb, fixedPages,
+                    WeatherEntry.decodeFixedPoint(PROJECTION));
+            assertTrue("Error: Fixed point storage should take fewer pages, " + fixedPages
+                    + " vs " + realPages, fixedPages < realPages);
+
+            // Both read back the same values
+            Cursor real = realDb.query(WeatherEntry.TABLE_NAME, PROJECTION,
+                    WeatherEntry.COLUMN_LOC_KEY + " = 1", null, null, null,
+                    WeatherEntry.COLUMN_DATE + " ASC");
+            Cursor fixed = fixedDb.query(WeatherEntry.TABLE_NAME,
+                    WeatherEntry.decodeFixedPoint(PROJECTION),
+                    WeatherEntry.COLUMN_LOC_KEY + " = 1", null, null, null,
+                    WeatherEntry.COLUMN_DATE + " ASC");
+            assertEquals(real.getCount(), fixed.getCount());
+            while (real.moveToNext() && fixed.moveToNext()) {
+                for (int i = 0; i < PROJECTION.length; i++) {
+                    assertEquals("Error: " + PROJECTION[i] + " did not survive fixed point storage",
+                            real.getDouble(i), fixed.getDouble(i), 0.01);
+                }
+            }
+            real.close();
+            fixed.close();
+        } finally {
+            realDb.close();
+            fixedDb.close();
+        }
+    }
+
+    private void report(String label, String name, SQLiteDatabase db, long pages,
+                        String[] projection) {
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        long rows = NUM_LOCATIONS * DAYS_PER_LOCATION;
+
+        long mark = SystemClock.elapsedRealtime();
+        Cursor history = db.query(WeatherEntry.TABLE_NAME, projection,
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{"1"}, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        double sum = 0;
+        while (history.moveToNext()) {
+            sum += history.getDouble(1);
+        }
+        long queryMillis = SystemClock.elapsedRealtime() - mark;
+        history.moveToFirst();
+        int windowRows = ((AbstractWindowedCursor) history).getWindow().getNumRows();
+        history.close();
+
+        Log.i(LOG_TAG, label + ": " + mContext.getDatabasePath(name).length() + " bytes, "
+                + pages + " pages of " + pageSize + " for " + rows + " rows; one location's "
+                + DAYS_PER_LOCATION + " days span about " + (pages * DAYS_PER_LOCATION / rows)
+                + " pages and read in " + queryMillis + "ms; " + windowRows
+                + " rows in the first cursor window (checksum " + sum + ")");
+    }
+}
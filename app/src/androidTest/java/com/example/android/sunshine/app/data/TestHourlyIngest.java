@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+
+/*
+    Fills the hourly table to well over 10k rows and logs how long ingest and range queries take.
+    The assertions check the round trip of the scaled values and that range queries are answered
+    through an index.
+ */
+public class TestHourlyIngest extends AndroidTestCase {
+    public static final String LOG_TAG = TestHourlyIngest.class.getSimpleName();
+
+    private static final int NUM_LOCATIONS = 25;
+    // About seven weeks of 3-hour steps per location
+    private static final int STEPS_PER_LOCATION = 400;
+    private static final long STEP_SECONDS = 3 * 60 * 60;
+    private static final long FIRST_TIME = 1419033600L;  // December 20th, 2014
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAll();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll();
+        super.tearDown();
+    }
+
+    private void deleteAll() {
+        mContext.getContentResolver().delete(HourlyEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private long insertLocation(int i) {
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting(i));
+        location.put(LocationEntry.COLUMN_CITY_NAME, "City " + i);
+        location.put(LocationEntry.COLUMN_COORD_LAT, i);
+        location.put(LocationEntry.COLUMN_COORD_LONG, -i);
+        Uri uri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, location);
+        return Long.parseLong(uri.getLastPathSegment());
+    }
+
+    private static String locationSetting(int i) {
+        return "8" + (1000 + i);
+    }
+
+    static ContentValues[] createSteps(long locationId, int numSteps) {
+        ContentValues[] steps = new ContentValues[numSteps];
+        for (int i = 0; i < numSteps; i++) {
+            ContentValues step = new ContentValues();
+            step.put(HourlyEntry.COLUMN_LOC_KEY, locationId);
+            step.put(HourlyEntry.COLUMN_TIME, FIRST_TIME + i * STEP_SECONDS);
+            step.put(HourlyEntry.COLUMN_WEATHER_ID, 800);
+            step.put(HourlyEntry.COLUMN_TEMP,
+                    WeatherContract.toFixedPoint(-5.25 + i % 20, HourlyEntry.TEMP_SCALE));
+            step.put(HourlyEntry.COLUMN_HUMIDITY, 50 + i % 40);
+            step.put(HourlyEntry.COLUMN_PRESSURE,
+                    WeatherContract.toFixedPoint(1013.2, HourlyEntry.PRESSURE_SCALE));
+            step.put(HourlyEntry.COLUMN_WIND_SPEED,
+                    WeatherContract.toFixedPoint(4.75, HourlyEntry.WIND_SCALE));
+            step.put(HourlyEntry.COLUMN_DEGREES, (i * 15) % 360);
+            steps[i] = step;
+        }
+        return steps;
+    }
+
+    public void testIngestAndRangeQueries() {
+        long bulkMillis = 0;
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            ContentValues[] steps = createSteps(insertLocation(i), STEPS_PER_LOCATION);
+            long mark = SystemClock.elapsedRealtime();
+            int inserted = mContext.getContentResolver().bulkInsert(HourlyEntry.CONTENT_URI, steps);
+            bulkMillis += SystemClock.elapsedRealtime() - mark;
+            assertEquals(STEPS_PER_LOCATION, inserted);
+        }
+
+        // One more location a row at a time, for comparison
+        ContentValues[] steps = createSteps(insertLocation(NUM_LOCATIONS), STEPS_PER_LOCATION);
+        long mark = SystemClock.elapsedRealtime();
+        for (ContentValues step : steps) {
+            mContext.getContentResolver().insert(HourlyEntry.CONTENT_URI, step);
+        }
+        long singleMillis = SystemClock.elapsedRealtime() - mark;
+
+        int totalRows = (NUM_LOCATIONS + 1) * STEPS_PER_LOCATION;
+        Log.i(LOG_TAG, "bulkInsert: " + NUM_LOCATIONS * STEPS_PER_LOCATION + " rows in "
+                + bulkMillis + "ms; insert: " + STEPS_PER_LOCATION + " rows in " + singleMillis
+                + "ms");
+
+        // One day for each location, as a day view would ask for it
+        long start = FIRST_TIME + 100 * STEP_SECONDS;
+        long end = start + 8 * STEP_SECONDS;
+        mark = SystemClock.elapsedRealtime();
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    HourlyEntry.buildHourlyLocationWithTimeRange(locationSetting(i), start, end),
+                    null, null, null, null);
+            assertEquals(8, cursor.getCount());
+            cursor.close();
+        }
+        Log.i(LOG_TAG, NUM_LOCATIONS + " range queries over " + totalRows + " rows in "
+                + (SystemClock.elapsedRealtime() - mark) + "ms");
+
+        Cursor cursor = mContext.getContentResolver().query(
+                HourlyEntry.buildHourlyLocation(locationSetting(0)), null, null, null, null);
+        assertEquals(STEPS_PER_LOCATION, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-5.25, WeatherContract.fromFixedPoint(
+                cursor.getInt(cursor.getColumnIndex(HourlyEntry.COLUMN_TEMP)),
+                HourlyEntry.TEMP_SCALE), 0.001);
+        cursor.close();
+    }
+
+    public void testRangeQueryUsesIndex() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + HourlyEntry.TABLE_NAME +
+                " WHERE " + HourlyEntry.COLUMN_LOC_KEY + " = ? AND " +
+                HourlyEntry.COLUMN_TIME + " >= ? AND " + HourlyEntry.COLUMN_TIME + " < ?",
+                new String[]{"1", "0", "1"});
+        StringBuilder details = new StringBuilder();
+        while (plan.moveToNext()) {
+            details.append(plan.getString(plan.getColumnIndex("detail"))).append('\n');
+        }
+        plan.close();
+        db.close();
+        assertTrue("Error: Hourly range queries scan the whole table: " + details,
+                details.toString().contains("INDEX"));
+    }
+}
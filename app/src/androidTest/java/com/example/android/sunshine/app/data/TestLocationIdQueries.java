@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Compares the location setting routes, which join the location table, with the
+    weather_by_location_id routes, which read the weather table alone, over a table of more than
+    10k rows.  Timings are logged; the assertions only check that both paths agree and that the
+    id path is planned through the (location_id, date) index.
+ */
+public class TestLocationIdQueries extends AndroidTestCase {
+    public static final String LOG_TAG = TestLocationIdQueries.class.getSimpleName();
+
+    private static final int NUM_LOCATIONS = 20;
+    private static final int DAYS_PER_LOCATION = 600;
+    private static final int ITERATIONS = 10;
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final long FIRST_DATE = WeatherContract.normalizeDate(1419033600000L);
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private final long[] mLocationIds = new long[NUM_LOCATIONS];
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            ContentValues location = new ContentValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting(i));
+            location.put(LocationEntry.COLUMN_CITY_NAME, "City " + i);
+            location.put(LocationEntry.COLUMN_COORD_LAT, i);
+            location.put(LocationEntry.COLUMN_COORD_LONG, -i);
+            Uri uri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, location);
+            mLocationIds[i] = Long.parseLong(uri.getLastPathSegment());
+
+            ContentValues[] days = new ContentValues[DAYS_PER_LOCATION];
+            for (int day = 0; day < DAYS_PER_LOCATION; day++) {
+                ContentValues values = TestUtilities.createWeatherValues(mLocationIds[i]);
+                values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + day * DAY_IN_MILLIS);
+                days[day] = values;
+            }
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, days);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        super.tearDown();
+    }
+
+    private static String locationSetting(int i) {
+        return "9" + (1000 + i);
+    }
+
+    public void testIdPathMatchesSettingPath() {
+        long startDate = FIRST_DATE + (DAYS_PER_LOCATION - 14) * DAY_IN_MILLIS;
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            assertEquals("Error: The id and setting routes returned different rows",
+                    count(WeatherEntry.buildWeatherLocationWithStartDate(
+                            locationSetting(i), startDate)),
+                    count(WeatherEntry.buildWeatherLocationIdWithStartDate(
+                            mLocationIds[i], startDate)));
+        }
+
+        Uri range = WeatherEntry.buildWeatherLocationIdWithDateRange(
+                mLocationIds[0], FIRST_DATE, FIRST_DATE + 7 * DAY_IN_MILLIS);
+        assertEquals("Error: The range end should be exclusive", 7, count(range));
+
+        Uri day = WeatherEntry.buildWeatherLocationIdWithDate(mLocationIds[0], FIRST_DATE);
+        assertEquals(1, count(day));
+    }
+
+    public void testIdPathUsesIndex() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + WeatherEntry.TABLE_NAME +
+                " WHERE " + WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(mLocationIds[0]), Long.toString(FIRST_DATE)});
+        StringBuilder details = new StringBuilder();
+        while (plan.moveToNext()) {
+            details.append(plan.getString(plan.getColumnIndex("detail"))).append('\n');
+        }
+        plan.close();
+        db.close();
+        assertTrue("Error: The id path is not using the location/date index: " + details,
+                details.toString().contains(WeatherEntry.INDEX_LOCATION_DATE));
+    }
+
+    public void testQueryTimings() {
+        long startDate = FIRST_DATE + (DAYS_PER_LOCATION - 14) * DAY_IN_MILLIS;
+
+        // Warm up both paths so neither pays for opening the database
+        count(WeatherEntry.buildWeatherLocationWithStartDate(locationSetting(0), startDate));
+        count(WeatherEntry.buildWeatherLocationIdWithStartDate(mLocationIds[0], startDate));
+
+        long settingMillis = 0;
+        long idMillis = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int i = 0; i < NUM_LOCATIONS; i++) {
+                long mark = SystemClock.elapsedRealtime();
+                count(WeatherEntry.buildWeatherLocationWithStartDate(locationSetting(i), startDate));
+                settingMillis += SystemClock.elapsedRealtime() - mark;
+
+                mark = SystemClock.elapsedRealtime();
+                count(WeatherEntry.buildWeatherLocationIdWithStartDate(mLocationIds[i], startDate));
+                idMillis += SystemClock.elapsedRealtime() - mark;
+            }
+        }
+
+        int queries = ITERATIONS * NUM_LOCATIONS;
+        Log.i(LOG_TAG, queries + " queries over " + NUM_LOCATIONS * DAYS_PER_LOCATION
+                + " rows: location setting join " + settingMillis + "ms, location id "
+                + idMillis + "ms");
+    }
+
+    // Walks the whole cursor so the timings include filling the window
+    private int count(Uri uri) {
+        Cursor cursor = mContext.getContentResolver().query(uri, PROJECTION, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        int rows = 0;
+        while (cursor.moveToNext()) {
+            rows++;
+        }
+        cursor.close();
+        return rows;
+    }
+}
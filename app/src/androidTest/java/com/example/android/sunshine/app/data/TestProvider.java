@@ -16,6 +16,9 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.pm.PackageManager;
@@ -30,6 +33,9 @@ import android.util.Log;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
+import java.io.File;
+import java.util.ArrayList;
+
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
     that at least the basic functionality has been implemented correctly.
@@ -512,4 +518,295 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // A batch of writes should reach each observer as a single change notification, no matter
+    // how many provider calls it is made of.
+    public void testBatchNotifiesOnce() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        // Watch the way a CursorLoader on the forecast list would
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION), true, weatherObserver);
+
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        WeatherProvider weatherProvider = (WeatherProvider) client.getLocalContentProvider();
+        weatherProvider.beginBatch();
+        try {
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                    createBulkInsertWeatherValues(locationRowId));
+            mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                    WeatherEntry.COLUMN_DATE + " <= ?",
+                    new String[]{Long.toString(TestUtilities.TEST_DATE)});
+        } finally {
+            weatherProvider.endBatch(true);
+            client.release();
+        }
+
+        int changes = TestUtilities.waitForNotificationsAndCount(weatherObserver);
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+        assertEquals("Error: A batch should notify observers exactly once", 1, changes);
+    }
+
+    // A location insert, forecast inserts that refer back to it and a delete of old rows should
+    // land together, announced by a single notification.
+    public void testApplyBatch() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        for (ContentValues weatherValues : createBulkInsertWeatherValues(0)) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(weatherValues)
+                    .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                    .build());
+        }
+        // Drops the first day
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(TestUtilities.TEST_DATE)})
+                .build());
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION), true, weatherObserver);
+
+        ContentProviderResult[] results = mContext.getContentResolver()
+                .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+
+        int changes = TestUtilities.waitForNotificationsAndCount(weatherObserver);
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+        assertEquals("Error: applyBatch should notify observers exactly once", 1, changes);
+
+        assertEquals(operations.size(), results.length);
+        assertEquals("Error: The delete should have removed exactly one day",
+                1, results[results.length - 1].count.intValue());
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION),
+                null, null, null, null);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 1, cursor.getCount());
+        cursor.close();
+    }
+
+    // A sync batch that prunes days changes the archive as well as the weather table; observers
+    // of other tables, such as the location list, must not hear about it.
+    public void testPruningBatchNotifiesOnlyChangedTables() throws Exception {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+        ContentValues[] weatherValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+        // Days already in the archive would not change it again
+        File[] archived = new File(mContext.getFilesDir(), WeatherArchive.DIRECTORY).listFiles();
+        if (archived != null) {
+            for (File file : archived) {
+                file.delete();
+            }
+        }
+
+        // The new forecast, and the first day moved to the archive, the way a sync writes them
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (ContentValues values : weatherValues) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(values)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.buildArchivingUri())
+                .withSelection(WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(TestUtilities.TEST_DATE)})
+                .build());
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION), true, weatherObserver);
+        TestUtilities.TestContentObserver archiveObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.ArchiveEntry.CONTENT_URI, true, archiveObserver);
+        TestUtilities.TestContentObserver locationObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                LocationEntry.CONTENT_URI, true, locationObserver);
+
+        mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+
+        int weatherChanges = TestUtilities.waitForNotificationsAndCount(weatherObserver);
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+        mContext.getContentResolver().unregisterContentObserver(archiveObserver);
+        mContext.getContentResolver().unregisterContentObserver(locationObserver);
+        archiveObserver.mHT.quit();
+        locationObserver.mHT.quit();
+
+        assertEquals("Error: The batch should notify weather observers exactly once",
+                1, weatherChanges);
+        assertEquals("Error: The batch should notify archive observers exactly once",
+                1, archiveObserver.mChangeCount);
+        assertEquals("Error: The batch should not notify location observers",
+                0, locationObserver.mChangeCount);
+    }
+
+    // If one operation fails, none of the batch may be kept.
+    public void testApplyBatchIsAtomic() {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        // Missing every NOT NULL column, so the insert fails
+        operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValue(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE)
+                .build());
+
+        try {
+            mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("Error: The invalid weather insert should have failed the batch");
+        } catch (Exception expected) {
+            // Either the SQLException itself or its wrapping, depending on the platform
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: The location insert should have been rolled back",
+                0, cursor.getCount());
+        cursor.close();
+    }
+
+    // Inside an outer batch, yield points must not commit anything early: rolling back the outer
+    // batch has to undo the whole applyBatch.
+    public void testNestedApplyBatchDoesNotYield() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        for (ContentValues weatherValues : createBulkInsertWeatherValues(0)) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(weatherValues)
+                    .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                    .withYieldAllowed(true)
+                    .build());
+        }
+
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        WeatherProvider weatherProvider = (WeatherProvider) client.getLocalContentProvider();
+        weatherProvider.beginBatch();
+        try {
+            weatherProvider.applyBatch(operations);
+        } finally {
+            weatherProvider.endBatch(false);
+            client.release();
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: The outer batch should have rolled back the location insert",
+                0, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: The outer batch should have rolled back the weather inserts",
+                0, cursor.getCount());
+        cursor.close();
+    }
+
+    // Lookups by location setting are answered from a cache; it must follow inserts, updates,
+    // deletes and rolled back batches.
+    public void testLocationIdLookup() {
+        Uri lookupUri = LocationEntry.buildLocationSettingUri(TestUtilities.TEST_LOCATION);
+        String[] idProjection = new String[]{LocationEntry._ID};
+
+        Cursor cursor = mContext.getContentResolver().query(lookupUri, idProjection, null, null, null);
+        assertEquals("Error: Found a location that was never inserted", 0, cursor.getCount());
+        cursor.close();
+
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        cursor = mContext.getContentResolver().query(lookupUri, idProjection, null, null, null);
+        assertTrue("Error: The inserted location was not found", cursor.moveToFirst());
+        assertEquals(locationRowId, cursor.getLong(0));
+        cursor.close();
+
+        // The full row comes from the table
+        cursor = mContext.getContentResolver().query(lookupUri, null, null, null, null);
+        TestUtilities.validateCursor("testLocationIdLookup.  Error validating location lookup.",
+                cursor, TestUtilities.createNorthPoleLocationValues());
+        cursor.close();
+
+        ContentValues renamed = new ContentValues();
+        renamed.put(LocationEntry.COLUMN_LOCATION_SETTING, "12345");
+        mContext.getContentResolver().update(LocationEntry.CONTENT_URI, renamed,
+                LocationEntry._ID + " = ?", new String[]{Long.toString(locationRowId)});
+
+        cursor = mContext.getContentResolver().query(lookupUri, idProjection, null, null, null);
+        assertEquals("Error: The old setting survived an update", 0, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(
+                LocationEntry.buildLocationSettingUri("12345"), idProjection, null, null, null);
+        assertTrue("Error: The updated setting was not found", cursor.moveToFirst());
+        assertEquals(locationRowId, cursor.getLong(0));
+        cursor.close();
+
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        cursor = mContext.getContentResolver().query(
+                LocationEntry.buildLocationSettingUri("12345"), idProjection, null, null, null);
+        assertEquals("Error: The location survived a delete", 0, cursor.getCount());
+        cursor.close();
+
+        // A failed batch must not leave its location in the cache
+        testApplyBatchIsAtomic();
+        cursor = mContext.getContentResolver().query(lookupUri, idProjection, null, null, null);
+        assertEquals("Error: A rolled back location was found", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    // Walking keyset pages must visit every day once, in order, through either location key.
+    public void testDateRangeAndPages() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        final int pageSize = 3;
+        long afterDate = 0;
+        int settingRows = 0;
+        while (true) {
+            Cursor page = mContext.getContentResolver().query(
+                    WeatherEntry.buildWeatherLocationPage(TestUtilities.TEST_LOCATION, afterDate, pageSize),
+                    new String[]{WeatherEntry.COLUMN_DATE}, null, null, null);
+            assertTrue("Error: A page was larger than its page size", page.getCount() <= pageSize);
+            if (!page.moveToFirst()) {
+                page.close();
+                break;
+            }
+            do {
+                assertEquals("Error: Pages skipped or repeated a day",
+                        bulkInsertContentValues[settingRows].getAsLong(WeatherEntry.COLUMN_DATE).longValue(),
+                        page.getLong(0));
+                afterDate = page.getLong(0);
+                settingRows++;
+            } while (page.moveToNext());
+            page.close();
+        }
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, settingRows);
+
+        Cursor idPage = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationIdPage(locationRowId, 0, pageSize),
+                new String[]{WeatherEntry.COLUMN_DATE}, null, null, null);
+        assertEquals(pageSize, idPage.getCount());
+        idPage.close();
+
+        // Ranges are [start, end)
+        long dayInMillis = 1000*60*60*24;
+        Cursor range = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithDateRange(TestUtilities.TEST_LOCATION,
+                        TestUtilities.TEST_DATE + 2 * dayInMillis,
+                        TestUtilities.TEST_DATE + 5 * dayInMillis),
+                null, null, null, null);
+        assertEquals(3, range.getCount());
+        range.close();
+    }
 }
@@ -34,8 +34,28 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_WEATHER_DIR = WeatherContract.WeatherEntry.CONTENT_URI;
     private static final Uri TEST_WEATHER_WITH_LOCATION_DIR = WeatherContract.WeatherEntry.buildWeatherLocation(LOCATION_QUERY);
     private static final Uri TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION_QUERY, TEST_DATE);
+    // content://com.example.android.sunshine.app/weather_by_location_id/10"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_ID_DIR = WeatherContract.WeatherEntry.buildWeatherLocationId(TEST_LOCATION_ID);
+    // content://com.example.android.sunshine.app/weather_by_location_id/10/1419120000"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_ID_AND_DATE = WeatherContract.WeatherEntry.buildWeatherLocationIdWithDate(TEST_LOCATION_ID, TEST_DATE);
+    // content://com.example.android.sunshine.app/weather/London, UK/range/1419120000/1419206400"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_AND_RANGE = WeatherContract.WeatherEntry.buildWeatherLocationWithDateRange(LOCATION_QUERY, TEST_DATE, TEST_DATE + 86400000L);
+    // content://com.example.android.sunshine.app/weather/London, UK/page/1419120000/7"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_PAGE = WeatherContract.WeatherEntry.buildWeatherLocationPage(LOCATION_QUERY, TEST_DATE, 7);
+    // content://com.example.android.sunshine.app/weather_by_location_id/10/page/1419120000/7"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_ID_PAGE = WeatherContract.WeatherEntry.buildWeatherLocationIdPage(TEST_LOCATION_ID, TEST_DATE, 7);
+    // content://com.example.android.sunshine.app/weather_by_location_id/10/range/1419120000/1419206400"
+    private static final Uri TEST_WEATHER_WITH_LOCATION_ID_AND_RANGE = WeatherContract.WeatherEntry.buildWeatherLocationIdWithDateRange(TEST_LOCATION_ID, TEST_DATE, TEST_DATE + 86400000L);
     // content://com.example.android.sunshine.app/location"
     private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    // content://com.example.android.sunshine.app/location/setting/London, UK"
+    private static final Uri TEST_LOCATION_WITH_SETTING = WeatherContract.LocationEntry.buildLocationSettingUri(LOCATION_QUERY);
+    // content://com.example.android.sunshine.app/hourly/London, UK/range/1419120000/1419130800"
+    private static final Uri TEST_HOURLY_WITH_LOCATION_AND_RANGE = WeatherContract.HourlyEntry.buildHourlyLocationWithTimeRange(LOCATION_QUERY, 1419120000L, 1419130800L);
+    // content://com.example.android.sunshine.app/archive/London, UK/range/1419120000/1419206400"
+    private static final Uri TEST_ARCHIVE_WITH_LOCATION_AND_RANGE = WeatherContract.ArchiveEntry.buildArchiveLocationWithDateRange(LOCATION_QUERY, TEST_DATE, TEST_DATE + 86400000L);
+    // content://com.example.android.sunshine.app/sync_metrics"
+    private static final Uri TEST_SYNC_METRICS_DIR = WeatherContract.SyncMetricsEntry.CONTENT_URI;
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -51,7 +71,43 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_DIR), WeatherProvider.WEATHER_WITH_LOCATION);
         assertEquals("Error: The WEATHER WITH LOCATION AND DATE URI was matched incorrectly.",
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR), WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
+        assertEquals("Error: The WEATHER WITH LOCATION AND RANGE URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_RANGE), WeatherProvider.WEATHER_WITH_LOCATION_AND_RANGE);
+        assertEquals("Error: The WEATHER WITH LOCATION PAGE URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_PAGE), WeatherProvider.WEATHER_WITH_LOCATION_PAGE);
+        assertEquals("Error: The WEATHER WITH LOCATION ID PAGE URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_ID_PAGE), WeatherProvider.WEATHER_WITH_LOCATION_ID_PAGE);
+        assertEquals("Error: The WEATHER WITH LOCATION ID URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_ID_DIR), WeatherProvider.WEATHER_WITH_LOCATION_ID);
+        assertEquals("Error: The WEATHER WITH LOCATION ID AND DATE URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_ID_AND_DATE), WeatherProvider.WEATHER_WITH_LOCATION_ID_AND_DATE);
+        assertEquals("Error: The WEATHER WITH LOCATION ID AND RANGE URI was matched incorrectly.",
+                testMatcher.match(TEST_WEATHER_WITH_LOCATION_ID_AND_RANGE), WeatherProvider.WEATHER_WITH_LOCATION_ID_AND_RANGE);
         assertEquals("Error: The LOCATION URI was matched incorrectly.",
                 testMatcher.match(TEST_LOCATION_DIR), WeatherProvider.LOCATION);
+        assertEquals("Error: The LOCATION WITH SETTING URI was matched incorrectly.",
+                testMatcher.match(TEST_LOCATION_WITH_SETTING), WeatherProvider.LOCATION_WITH_SETTING);
+        assertTrue("Error: A location row URI must not be read as a location setting.",
+                testMatcher.match(WeatherContract.LocationEntry.buildLocationUri(TEST_LOCATION_ID))
+                        != WeatherProvider.LOCATION_WITH_SETTING);
+        assertEquals("Error: A numeric location setting should still match by setting.",
+                testMatcher.match(WeatherContract.LocationEntry.buildLocationSettingUri("94043")),
+                WeatherProvider.LOCATION_WITH_SETTING);
+        assertEquals("Error: The HOURLY URI was matched incorrectly.",
+                testMatcher.match(WeatherContract.HourlyEntry.CONTENT_URI), WeatherProvider.HOURLY);
+        assertEquals("Error: The HOURLY WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(WeatherContract.HourlyEntry.buildHourlyLocation(LOCATION_QUERY)), WeatherProvider.HOURLY_WITH_LOCATION);
+        assertEquals("Error: The HOURLY WITH LOCATION AND RANGE URI was matched incorrectly.",
+                testMatcher.match(TEST_HOURLY_WITH_LOCATION_AND_RANGE), WeatherProvider.HOURLY_WITH_LOCATION_AND_RANGE);
+        assertEquals("Error: The ARCHIVE WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(WeatherContract.ArchiveEntry.buildArchiveLocation(LOCATION_QUERY)), WeatherProvider.ARCHIVE_WITH_LOCATION);
+        assertEquals("Error: The ARCHIVE WITH LOCATION AND RANGE URI was matched incorrectly.",
+                testMatcher.match(TEST_ARCHIVE_WITH_LOCATION_AND_RANGE), WeatherProvider.ARCHIVE_WITH_LOCATION_AND_RANGE);
+        assertEquals("Error: The STATS WITH LOCATION AND PERIOD URI was matched incorrectly.",
+                testMatcher.match(WeatherContract.StatsEntry.buildStatsLocation(LOCATION_QUERY, WeatherContract.StatsEntry.PERIOD_MONTH)), WeatherProvider.STATS_WITH_LOCATION_AND_PERIOD);
+        assertEquals("Error: The STATS WITH LOCATION, PERIOD AND DATE URI was matched incorrectly.",
+                testMatcher.match(WeatherContract.StatsEntry.buildStatsLocationWithDate(LOCATION_QUERY, WeatherContract.StatsEntry.PERIOD_WEEK, TEST_DATE)), WeatherProvider.STATS_WITH_LOCATION_PERIOD_AND_DATE);
+        assertEquals("Error: The SYNC METRICS URI was matched incorrectly.",
+                testMatcher.match(TEST_SYNC_METRICS_DIR), WeatherProvider.SYNC_METRICS);
     }
 }
@@ -122,6 +122,7 @@ public class TestUtilities extends AndroidTestCase {
     static class TestContentObserver extends ContentObserver {
         final HandlerThread mHT;
         boolean mContentChanged;
+        int mChangeCount;
 
         static TestContentObserver getTestContentObserver() {
             HandlerThread ht = new HandlerThread("ContentObserverThread");
@@ -142,6 +143,7 @@ public class TestUtilities extends AndroidTestCase {
 
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            mChangeCount++;
             mContentChanged = true;
         }
 
@@ -160,6 +162,26 @@ public class TestUtilities extends AndroidTestCase {
         }
     }
 
+    /*
+        Waits for the first notification, then gives any stragglers some time to arrive, and
+        returns how many notifications were delivered in total.
+     */
+    static int waitForNotificationsAndCount(final TestContentObserver observer) {
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return observer.mContentChanged;
+            }
+        }.run();
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        observer.mHT.quit();
+        return observer.mChangeCount;
+    }
+
     static TestContentObserver getTestContentObserver() {
         return TestContentObserver.getTestContentObserver();
     }
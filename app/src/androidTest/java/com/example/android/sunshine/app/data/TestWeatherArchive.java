@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Archives a few years of days, enough to span several blocks of the archive file, and checks
+    that range queries return exactly the days asked for with their values intact.  The scan over
+    the whole history is timed and logged.
+ */
+public class TestWeatherArchive extends AndroidTestCase {
+    public static final String LOG_TAG = TestWeatherArchive.class.getSimpleName();
+
+    private static final int NUM_DAYS = 3 * WeatherArchive.BLOCK_ROWS - 300;
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final long FIRST_DATE = WeatherContract.normalizeDate(1419033600000L);
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(mContext.getCacheDir(), "test_archive");
+        deleteAll();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll();
+        super.tearDown();
+    }
+
+    private void deleteAll() {
+        deleteDirectory(mDirectory);
+        deleteDirectory(new File(mContext.getFilesDir(), WeatherArchive.DIRECTORY));
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static ContentValues createDay(int day) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + day * DAY_IN_MILLIS);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 800 + day % 4);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, -5.25 + day % 20);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, 10.75 + day % 25);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 40.5 + day % 50);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1013.2 - day % 10);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 1.25 + day % 9);
+        values.put(WeatherEntry.COLUMN_DEGREES, (day * 15) % 360);
+        return values;
+    }
+
+    private static List<ContentValues> createDays(int first, int count) {
+        List<ContentValues> days = new ArrayList<ContentValues>();
+        for (int day = first; day < first + count; day++) {
+            days.add(createDay(day));
+        }
+        return days;
+    }
+
+    // Measurements come back as the scaled values they were stored as, so compare as numbers
+    private static void assertDay(Cursor cursor, int day) {
+        ContentValues expected = createDay(day);
+        for (String column : expected.keySet()) {
+            int index = cursor.getColumnIndex(column);
+            assertFalse("Error: Column '" + column + "' not found", index == -1);
+            assertEquals("Error: " + column + " of archived day " + day + " does not match",
+                    expected.getAsDouble(column), cursor.getDouble(index), 0.001);
+        }
+    }
+
+    public void testAppendAndRange() throws Exception {
+        WeatherArchive archive = new WeatherArchive(mDirectory);
+
+        // Appended in uneven runs, the second overlapping the first
+        assertEquals(700, archive.append(TestUtilities.TEST_LOCATION, createDays(0, 700)));
+        assertEquals("Error: Days already archived should be skipped",
+                NUM_DAYS - 700, archive.append(TestUtilities.TEST_LOCATION, createDays(600, NUM_DAYS - 600)));
+        assertEquals(0, archive.append(TestUtilities.TEST_LOCATION, createDays(0, 10)));
+
+        Cursor all = archive.query(TestUtilities.TEST_LOCATION, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(NUM_DAYS, all.getCount());
+        while (all.moveToNext()) {
+            assertEquals(all.getPosition(), all.getLong(all.getColumnIndex(ArchiveEntry._ID)));
+            assertDay(all, all.getPosition());
+        }
+        all.close();
+
+        // A range crossing the first block boundary
+        int first = WeatherArchive.BLOCK_ROWS - 5;
+        Cursor range = archive.query(TestUtilities.TEST_LOCATION,
+                new String[]{ArchiveEntry.COLUMN_DATE, ArchiveEntry.COLUMN_MAX_TEMP},
+                FIRST_DATE + first * DAY_IN_MILLIS, FIRST_DATE + (first + 10) * DAY_IN_MILLIS);
+        assertEquals(10, range.getCount());
+        for (int day = first; range.moveToNext(); day++) {
+            assertEquals(FIRST_DATE + day * DAY_IN_MILLIS, range.getLong(0));
+            assertEquals(10.75 + day % 25, range.getDouble(1), 0.001);
+        }
+        range.close();
+
+        // Ranges outside the archive, and a location with no archive
+        Cursor before = archive.query(TestUtilities.TEST_LOCATION, null, 0, FIRST_DATE);
+        assertEquals(0, before.getCount());
+        before.close();
+        Cursor missing = archive.query("nowhere", null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(0, missing.getCount());
+        missing.close();
+    }
+
+    // A crash between allocating a block and writing its count leaves an empty block at the end;
+    // the next append has to pick up after the last day actually archived.
+    public void testAppendAfterEmptyTrailingBlock() throws Exception {
+        WeatherArchive archive = new WeatherArchive(mDirectory);
+        assertEquals(WeatherArchive.BLOCK_ROWS,
+                archive.append(TestUtilities.TEST_LOCATION, createDays(0, WeatherArchive.BLOCK_ROWS)));
+
+        RandomAccessFile file = new RandomAccessFile(
+                new File(mDirectory, Uri.encode(TestUtilities.TEST_LOCATION) + ".archive"), "rw");
+        try {
+            file.setLength(2 * WeatherArchive.BLOCK_BYTES);
+        } finally {
+            file.close();
+        }
+
+        assertEquals("Error: Days after the last archived one should be appended",
+                10, archive.append(TestUtilities.TEST_LOCATION,
+                        createDays(WeatherArchive.BLOCK_ROWS - 5, 15)));
+
+        Cursor all = archive.query(TestUtilities.TEST_LOCATION, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(WeatherArchive.BLOCK_ROWS + 10, all.getCount());
+        while (all.moveToNext()) {
+            assertDay(all, all.getPosition());
+        }
+        all.close();
+    }
+
+    public void testScanTiming() throws Exception {
+        WeatherArchive archive = new WeatherArchive(mDirectory);
+        archive.append(TestUtilities.TEST_LOCATION, createDays(0, NUM_DAYS));
+
+        long mark = SystemClock.elapsedRealtime();
+        Cursor cursor = archive.query(TestUtilities.TEST_LOCATION,
+                new String[]{ArchiveEntry.COLUMN_MIN_TEMP, ArchiveEntry.COLUMN_MAX_TEMP},
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        double sum = 0;
+        while (cursor.moveToNext()) {
+            sum += cursor.getDouble(1) - cursor.getDouble(0);
+        }
+        long scanMillis = SystemClock.elapsedRealtime() - mark;
+        cursor.close();
+
+        Log.i(LOG_TAG, "Scanned " + NUM_DAYS + " archived days in " + scanMillis + "ms, "
+                + new File(mDirectory, Uri.encode(TestUtilities.TEST_LOCATION) + ".archive").length()
+                + " bytes on disk (checksum " + sum + ")");
+    }
+
+    public void testArchivingDelete() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        long locationId = ContentUris.parseId(locationUri);
+
+        int numDays = 40;
+        ContentValues[] days = new ContentValues[numDays];
+        for (int day = 0; day < numDays; day++) {
+            days[day] = createDay(day);
+            days[day].put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+            days[day].put(WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, days);
+
+        // Delete the first 30 days the way the sync adapter does
+        long deleteUpTo = FIRST_DATE + 29 * DAY_IN_MILLIS;
+        int deleted = mContext.getContentResolver().delete(WeatherEntry.buildArchivingUri(),
+                WeatherEntry.COLUMN_DATE + " <= ?", new String[]{Long.toString(deleteUpTo)});
+        assertEquals(30, deleted);
+
+        Cursor archived = mContext.getContentResolver().query(
+                ArchiveEntry.buildArchiveLocationWithDateRange(TestUtilities.TEST_LOCATION,
+                        FIRST_DATE + 10 * DAY_IN_MILLIS, FIRST_DATE + 40 * DAY_IN_MILLIS),
+                null, null, null, null);
+        assertEquals("Error: Only the deleted days should be archived", 20, archived.getCount());
+        for (int day = 10; archived.moveToNext(); day++) {
+            assertDay(archived, day);
+        }
+        archived.close();
+
+        // A plain delete archives nothing more
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        archived = mContext.getContentResolver().query(
+                ArchiveEntry.buildArchiveLocation(TestUtilities.TEST_LOCATION),
+                null, null, null, null);
+        assertEquals(30, archived.getCount());
+        archived.close();
+    }
+}
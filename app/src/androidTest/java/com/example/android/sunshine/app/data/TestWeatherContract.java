@@ -42,4 +42,28 @@ public class TestWeatherContract extends AndroidTestCase {
                 locationUri.toString(),
                 "content://com.example.android.sunshine.app/weather/%2FNorth%20Pole");
     }
+
+    public void testBuildWeatherLocationIdWithDateRange() {
+        long start = WeatherContract.normalizeDate(TEST_WEATHER_DATE);
+        long end = start + 7 * 86400000L;
+        Uri rangeUri = WeatherContract.WeatherEntry.buildWeatherLocationIdWithDateRange(
+                42L, start, end);
+        assertEquals("Error: Location id not read back from the range Uri",
+                42L, WeatherContract.WeatherEntry.getLocationIdFromUri(rangeUri));
+        assertEquals("Error: Start date not read back from the range Uri",
+                start, WeatherContract.WeatherEntry.getRangeStartFromUri(rangeUri));
+        assertEquals("Error: End date not read back from the range Uri",
+                end, WeatherContract.WeatherEntry.getRangeEndFromUri(rangeUri));
+    }
+
+    public void testBuildWeatherLocationPage() {
+        Uri pageUri = WeatherContract.WeatherEntry.buildWeatherLocationPage(
+                TEST_WEATHER_LOCATION, TEST_WEATHER_DATE, 7);
+        assertEquals("Error: Location not read back from the page Uri",
+                TEST_WEATHER_LOCATION, WeatherContract.WeatherEntry.getLocationSettingFromUri(pageUri));
+        assertEquals("Error: After date not read back from the page Uri",
+                TEST_WEATHER_DATE, WeatherContract.WeatherEntry.getPageAfterDateFromUri(pageUri));
+        assertEquals("Error: Page size not read back from the page Uri",
+                7, WeatherContract.WeatherEntry.getPageSizeFromUri(pageUri));
+    }
 }
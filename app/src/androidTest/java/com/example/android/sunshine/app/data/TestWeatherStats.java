@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.StatsEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/*
+    Writes random forecasts, rewriting many days several times, and checks every stats bucket
+    against a scan of the weather rows it covers.  The seeds are fixed so that a failure can be
+    replayed.
+ */
+public class TestWeatherStats extends AndroidTestCase {
+    private static final String[] LOCATIONS = {"99705", "94043"};
+    private static final String[] PERIODS = {
+            StatsEntry.PERIOD_DAY, StatsEntry.PERIOD_WEEK, StatsEntry.PERIOD_MONTH
+    };
+    private static final int NUM_DAYS = 120;
+    private static final int NUM_WRITES = 40;
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final long FIRST_DATE = WeatherContract.normalizeDate(1419033600000L);
+
+    private static final double EPSILON = 1e-6;
+
+    private long[] mLocationIds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAll();
+        mLocationIds = new long[LOCATIONS.length];
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            ContentValues location = TestUtilities.createNorthPoleLocationValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, LOCATIONS[i]);
+            mLocationIds[i] = ContentUris.parseId(
+                    mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, location));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll();
+        super.tearDown();
+    }
+
+    private void deleteAll() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private static ContentValues createDay(Random random, long locationId, int day) {
+        ContentValues values = new ContentValues();
+        double min = random.nextInt(400) / 10.0 - 15;
+        values.put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + day * DAY_IN_MILLIS);
+        values.put(WeatherEntry.COLUMN_SHORT_DESC, "Random");
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 200 + random.nextInt(7) * 100);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, min);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, min + random.nextInt(150) / 10.0);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 50);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1013);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 3);
+        values.put(WeatherEntry.COLUMN_DEGREES, 180);
+        return values;
+    }
+
+    public void testStatsMatchScans() {
+        for (long seed = 1; seed <= 3; seed++) {
+            Random random = new Random(seed);
+            for (int write = 0; write < NUM_WRITES; write++) {
+                // Like a sync: a run of consecutive days for one location, overlapping earlier ones
+                long locationId = mLocationIds[random.nextInt(mLocationIds.length)];
+                int first = random.nextInt(NUM_DAYS - 14);
+                int count = 1 + random.nextInt(14);
+                if (count == 1) {
+                    mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI,
+                            createDay(random, locationId, first));
+                    continue;
+                }
+                ContentValues[] days = new ContentValues[count];
+                for (int i = 0; i < count; i++) {
+                    days[i] = createDay(random, locationId, first + i);
+                }
+                mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, days);
+            }
+            for (int i = 0; i < LOCATIONS.length; i++) {
+                for (String period : PERIODS) {
+                    assertBucketsMatchScan(LOCATIONS[i], mLocationIds[i], period);
+                }
+            }
+        }
+    }
+
+    // Both stats routes must refuse a period they don't know, not answer it with no rows.
+    public void testUnknownPeriodIsRejected() {
+        Uri[] uris = {
+                StatsEntry.buildStatsLocation(LOCATIONS[0], "fortnight"),
+                StatsEntry.buildStatsLocationWithDate(LOCATIONS[0], "fortnight", FIRST_DATE)
+        };
+        for (Uri uri : uris) {
+            try {
+                Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+                if (cursor != null) {
+                    cursor.close();
+                }
+                fail("Error: " + uri + " should have been rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private void assertBucketsMatchScan(String locationSetting, long locationId, String period) {
+        // Every day in the weather table falls in exactly one listed bucket
+        TreeSet<Long> expectedBuckets = new TreeSet<Long>();
+        for (long date : getDates(locationId)) {
+            expectedBuckets.add(StatsEntry.getBucketStart(period, date));
+        }
+        Cursor buckets = mContext.getContentResolver().query(
+                StatsEntry.buildStatsLocation(locationSetting, period), null, null, null, null);
+        assertEquals("Error: Wrong number of " + period + " buckets",
+                expectedBuckets.size(), buckets.getCount());
+        buckets.close();
+
+        for (long bucketStart : expectedBuckets) {
+            // Ask with a date in the middle of the bucket, not its start
+            long next = StatsEntry.getNextBucketStart(period, bucketStart);
+            long date = bucketStart + (next - bucketStart) / 2;
+            Cursor bucket = mContext.getContentResolver().query(
+                    StatsEntry.buildStatsLocationWithDate(locationSetting, period, date),
+                    null, null, null, null);
+            assertTrue("Error: No " + period + " bucket for " + bucketStart, bucket.moveToFirst());
+            assertEquals(bucketStart, bucket.getLong(bucket.getColumnIndex(StatsEntry.COLUMN_BUCKET)));
+            assertBucketMatchesScan(period + " " + bucketStart, bucket,
+                    scan(locationId, bucketStart, next));
+            bucket.close();
+        }
+    }
+
+    private List<Long> getDates(long locationId) {
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_DATE},
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{Long.toString(locationId)},
+                null);
+        List<Long> dates = new ArrayList<Long>();
+        while (cursor.moveToNext()) {
+            dates.add(cursor.getLong(0));
+        }
+        cursor.close();
+        return dates;
+    }
+
+    // { days, low, high, sum_min, sum_max, wet_days }, worked out row by row
+    private double[] scan(long locationId, long start, long end) {
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_MIN_TEMP, WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherEntry.COLUMN_WEATHER_ID},
+                WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " >= ? AND "
+                        + WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(locationId), Long.toString(start), Long.toString(end)},
+                null);
+        double[] stats = {0, Double.MAX_VALUE, -Double.MAX_VALUE, 0, 0, 0};
+        while (cursor.moveToNext()) {
+            double min = cursor.getDouble(0);
+            double max = cursor.getDouble(1);
+            stats[0]++;
+            stats[1] = Math.min(stats[1], min);
+            stats[2] = Math.max(stats[2], max);
+            stats[3] += min;
+            stats[4] += max;
+            stats[5] += StatsEntry.isWet(cursor.getInt(2)) ? 1 : 0;
+        }
+        cursor.close();
+        return stats;
+    }
+
+    private static void assertBucketMatchesScan(String bucketName, Cursor bucket, double[] scan) {
+        String[] columns = {StatsEntry.COLUMN_DAYS, StatsEntry.COLUMN_LOW, StatsEntry.COLUMN_HIGH,
+                StatsEntry.COLUMN_SUM_MIN, StatsEntry.COLUMN_SUM_MAX, StatsEntry.COLUMN_WET_DAYS};
+        for (int i = 0; i < columns.length; i++) {
+            assertEquals("Error: " + columns[i] + " of " + bucketName + " does not match a scan",
+                    scan[i], bucket.getDouble(bucket.getColumnIndex(columns[i])), EPSILON);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A tiny in-process HTTP/1.1 server that replays recorded OpenWeatherMap payloads.  Point an
+ * {@link HttpForecastSource} at {@link #getBaseUrl()} to run the sync path end to end without
+ * network access.  Latency and bandwidth can be shaped to mimic slow links.
+ */
+public class ForecastStubServer {
+    private static final String LOG_TAG = ForecastStubServer.class.getSimpleName();
+
+    private final Map<String, byte[]> mPayloads = new HashMap<String, byte[]>();
+    private final Map<String, byte[]> mHourlyPayloads = new HashMap<String, byte[]>();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+    private volatile long mLatencyMillis = 0;
+    // 0 means unthrottled
+    private volatile int mBytesPerSecond = 0;
+    private volatile boolean mGzipEnabled = true;
+
+    private ServerSocket mServerSocket;
+    private Thread mAcceptThread;
+
+    /**
+     * Registers the body returned for a given "q" parameter.  The payload registered under
+     * {@link FixtureForecastSource#DEFAULT_FIXTURE} answers any other location.
+     */
+    public synchronized void setPayload(String locationQuery, String json) {
+        try {
+            mPayloads.put(locationQuery, json.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registers the body returned by the 3-hour step endpoint, keyed as in
+     * {@link #setPayload(String, String)}.
+     */
+    public synchronized void setHourlyPayload(String locationQuery, String json) {
+        try {
+            mHourlyPayloads.put(locationQuery, json.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Delay before the response headers go out, simulating round trip and server time.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    /**
+     * Caps the rate the body is written at, 0 for no cap.
+     */
+    public void setBytesPerSecond(int bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Whether to honour "Accept-Encoding: gzip" from clients.  On by default, as on OWM.
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        mGzipEnabled = gzipEnabled;
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    public void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, LOG_TAG);
+        mAcceptThread.start();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        try {
+            mAcceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the API root to hand to {@link HttpForecastSource#HttpForecastSource(String)}.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/data/2.5/";
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnectionCount.incrementAndGet();
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                }, LOG_TAG + "-connection").start();
+            } catch (IOException e) {
+                // Thrown by accept() once shutdown() closes the socket
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            // Keep answering on the same socket until the client hangs up or asks us to
+            while ((requestLine = in.readLine()) != null) {
+                boolean close = false;
+                boolean acceptsGzip = false;
+                String header;
+                while ((header = in.readLine()) != null && header.length() > 0) {
+                    String lowerCase = header.toLowerCase();
+                    if (lowerCase.equals("connection: close")) {
+                        close = true;
+                    } else if (lowerCase.startsWith("accept-encoding:")
+                            && lowerCase.contains("gzip")) {
+                        acceptsGzip = true;
+                    }
+                }
+                mRequestCount.incrementAndGet();
+                respond(requestLine, acceptsGzip && mGzipEnabled, out);
+                if (close) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Connection failed", e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+
+    private void respond(String requestLine, boolean gzip, OutputStream out) throws IOException {
+        // "GET /data/2.5/forecast/daily?q=94043&... HTTP/1.1", or ".../forecast?q=..." for
+        // the 3-hour steps
+        String[] parts = requestLine.split(" ");
+        byte[] body = null;
+        if (parts.length == 3) {
+            Uri uri = Uri.parse(parts[1]);
+            String location = uri.getQueryParameter("q");
+            synchronized (this) {
+                Map<String, byte[]> payloads = "forecast".equals(uri.getLastPathSegment())
+                        ? mHourlyPayloads : mPayloads;
+                body = payloads.get(location);
+                if (body == null) {
+                    body = payloads.get(FixtureForecastSource.DEFAULT_FIXTURE);
+                }
+            }
+        }
+
+        sleep(mLatencyMillis);
+
+        String status = body != null ? "200 OK" : "404 Not Found";
+        if (body == null) {
+            body = "{\"cod\":\"404\",\"message\":\"city not found\"}".getBytes("UTF-8");
+        }
+        if (gzip) {
+            body = gzip(body);
+        }
+        String headers = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + (gzip ? "Content-Encoding: gzip\r\n" : "")
+                + "Content-Length: " + body.length + "\r\n"
+                + "\r\n";
+        out.write(headers.getBytes("ISO-8859-1"));
+        writeThrottled(out, body);
+        out.flush();
+    }
+
+    private void writeThrottled(OutputStream out, byte[] body) throws IOException {
+        int bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+            return;
+        }
+        // Send 10 slices a second so the transfer looks like a stream, not one late burst
+        int chunk = Math.max(1, bytesPerSecond / 10);
+        for (int offset = 0; offset < body.length; offset += chunk) {
+            int count = Math.min(chunk, body.length - offset);
+            out.write(body, offset, count);
+            out.flush();
+            sleep(count * 1000L / bytesPerSecond);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(body);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
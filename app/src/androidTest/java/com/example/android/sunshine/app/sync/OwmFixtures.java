@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds payloads shaped like the ones captured from OpenWeatherMap's forecast/daily and
+ * forecast (3-hour step) endpoints.  Values follow a fixed pattern so that runs are reproducible.
+ */
+public class OwmFixtures {
+    static final String TEST_CITY = "Mountain View";
+    static final double TEST_LAT = 37.3861;
+    static final double TEST_LON = -122.0839;
+
+    // Cycles through storm, drizzle, rain, snow, fog, clear, few clouds and overcast
+    private static final int[] WEATHER_IDS = {211, 301, 500, 601, 741, 800, 801, 804};
+    private static final String[] DESCRIPTIONS =
+            {"Thunderstorm", "Drizzle", "Rain", "Snow", "Fog", "Clear", "Clouds", "Clouds"};
+
+    static final long STEP_SECONDS = 3 * 60 * 60;
+
+    private static JSONObject city() throws JSONException {
+        JSONObject coord = new JSONObject()
+                .put("lat", TEST_LAT)
+                .put("lon", TEST_LON);
+        return new JSONObject()
+                .put("id", 5375480)
+                .put("name", TEST_CITY)
+                .put("coord", coord)
+                .put("country", "US")
+                .put("population", 0);
+    }
+
+    public static String dailyForecast(int numDays) {
+        try {
+            JSONObject city = city();
+
+            JSONArray list = new JSONArray();
+            for (int i = 0; i < numDays; i++) {
+                int condition = i % WEATHER_IDS.length;
+                JSONObject temp = new JSONObject()
+                        .put("day", 18.5 + i % 5)
+                        .put("min", 11.25 + i % 3)
+                        .put("max", 21.75 + i % 4)
+                        .put("night", 12.1)
+                        .put("eve", 17.3)
+                        .put("morn", 11.9);
+                JSONObject weather = new JSONObject()
+                        .put("id", WEATHER_IDS[condition])
+                        .put("main", DESCRIPTIONS[condition])
+                        .put("description", DESCRIPTIONS[condition].toLowerCase())
+                        .put("icon", "01d");
+                JSONObject day = new JSONObject()
+                        .put("dt", 1419033600L + i * 86400L)
+                        .put("temp", temp)
+                        .put("pressure", 1013.25 - i)
+                        .put("humidity", 60 + i % 30)
+                        .put("weather", new JSONArray().put(weather))
+                        .put("speed", 2.5 + i % 7)
+                        .put("deg", (i * 45) % 360)
+                        .put("clouds", 20);
+                list.put(day);
+            }
+
+            return new JSONObject()
+                    .put("city", city)
+                    .put("cod", "200")
+                    .put("message", 0.0123)
+                    .put("cnt", numDays)
+                    .put("list", list)
+                    .toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param startTime Time of the first step, in seconds since the epoch.  Steps are dropped
+     *                  once they are in the past, so tests pass a time near now.
+     */
+    public static String hourlyForecast(long startTime, int numSteps) {
+        try {
+            JSONArray list = new JSONArray();
+            for (int i = 0; i < numSteps; i++) {
+                int condition = i % WEATHER_IDS.length;
+                JSONObject main = new JSONObject()
+                        .put("temp", 14.37 + i % 9)
+                        .put("temp_min", 13.1)
+                        .put("temp_max", 15.9)
+                        .put("pressure", 1012.36 - i % 5)
+                        .put("sea_level", 1030.2)
+                        .put("grnd_level", 1012.36)
+                        .put("humidity", 71 + i % 20)
+                        .put("temp_kf", 0.5);
+                JSONObject weather = new JSONObject()
+                        .put("id", WEATHER_IDS[condition])
+                        .put("main", DESCRIPTIONS[condition])
+                        .put("description", DESCRIPTIONS[condition].toLowerCase())
+                        .put("icon", "01d");
+                JSONObject wind = new JSONObject()
+                        .put("speed", 3.46 + i % 6)
+                        .put("deg", (i * 30) % 360 + 0.5);
+                JSONObject step = new JSONObject()
+                        .put("dt", startTime + i * STEP_SECONDS)
+                        .put("main", main)
+                        .put("weather", new JSONArray().put(weather))
+                        .put("clouds", new JSONObject().put("all", 20))
+                        .put("wind", wind)
+                        .put("dt_txt", "2014-12-20 00:00:00");
+                list.put(step);
+            }
+
+            return new JSONObject()
+                    .put("cod", "200")
+                    .put("message", 0.0123)
+                    .put("cnt", numSteps)
+                    .put("list", list)
+                    .put("city", city())
+                    .toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
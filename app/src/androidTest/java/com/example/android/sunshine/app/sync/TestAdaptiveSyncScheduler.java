@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestAdaptiveSyncScheduler extends AndroidTestCase {
+
+    public void testUnchangedForecastStretchesInterval() {
+        int baseline = interval(0, 0f, false, false, false);
+        assertEquals(SunshineSyncAdapter.SYNC_INTERVAL, baseline);
+        assertEquals(baseline * 2, interval(1, 0f, false, false, false));
+        assertEquals(baseline * 4, interval(2, 0f, false, false, false));
+        assertEquals("Error: The interval should stop growing after two unchanged syncs",
+                baseline * 4, interval(10, 0f, false, false, false));
+    }
+
+    public void testVolatileAndSevereForecastShortensInterval() {
+        assertEquals(SunshineSyncAdapter.SYNC_INTERVAL / 2, interval(0, 0.5f, false, false, false));
+        assertEquals(AdaptiveSyncScheduler.MIN_INTERVAL, interval(0, 0f, true, false, false));
+        assertEquals("Error: Severe weather should win over metered networks and low battery",
+                AdaptiveSyncScheduler.MIN_INTERVAL, interval(3, 0f, true, true, true));
+    }
+
+    public void testMeteredAndLowBatteryDefer() {
+        assertEquals(SunshineSyncAdapter.SYNC_INTERVAL * 2, interval(0, 0f, false, true, false));
+        assertEquals(SunshineSyncAdapter.SYNC_INTERVAL * 2, interval(0, 0f, false, false, true));
+        assertEquals("Error: The interval should be capped",
+                AdaptiveSyncScheduler.MAX_INTERVAL, interval(2, 0f, false, true, true));
+    }
+
+    public void testChangedFraction() {
+        Map<Long, String> previous = new HashMap<Long, String>();
+        previous.put(1L, "800:20.0:10.0");
+        previous.put(2L, "800:20.0:10.0");
+        previous.put(3L, "800:20.0:10.0");
+
+        Map<Long, String> current = new HashMap<Long, String>();
+        current.put(2L, "500:20.0:10.0");   // condition changed
+        current.put(3L, "800:21.0:10.5");   // small temperature drift, unchanged
+        current.put(4L, "800:20.0:10.0");   // new day, not compared
+
+        assertEquals(0.5f, AdaptiveSyncScheduler.changedFraction(previous, current), 0.001f);
+        assertEquals(0f, AdaptiveSyncScheduler.changedFraction(
+                new HashMap<Long, String>(), current), 0.001f);
+    }
+
+    private static int interval(int unchangedStreak, float changedFraction, boolean severe,
+                                boolean metered, boolean lowBattery) {
+        return AdaptiveSyncScheduler.computeInterval(unchangedStreak, changedFraction, severe,
+                metered, lowBattery, new StringBuilder());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class TestHourlyForecastParser extends AndroidTestCase {
+    private static final long TEST_TIME = 1419033600L;  // December 20th, 2014
+    private static final long TEST_LOCATION_ID = 7L;
+
+    public void testParseSteps() throws IOException {
+        List<ContentValues> steps = HourlyForecastParser.parse(
+                new StringReader(OwmFixtures.hourlyForecast(TEST_TIME, 40)), TEST_LOCATION_ID);
+        assertEquals(40, steps.size());
+
+        ContentValues first = steps.get(0);
+        assertEquals(TEST_LOCATION_ID, first.getAsLong(HourlyEntry.COLUMN_LOC_KEY).longValue());
+        assertEquals(TEST_TIME, first.getAsLong(HourlyEntry.COLUMN_TIME).longValue());
+        assertEquals(211, first.getAsInteger(HourlyEntry.COLUMN_WEATHER_ID).intValue());
+        // 14.37 degrees, 1012.36 hPa and 3.46 m/s, scaled and rounded
+        assertEquals(1437, first.getAsInteger(HourlyEntry.COLUMN_TEMP).intValue());
+        assertEquals(10124, first.getAsInteger(HourlyEntry.COLUMN_PRESSURE).intValue());
+        assertEquals(346, first.getAsInteger(HourlyEntry.COLUMN_WIND_SPEED).intValue());
+        assertEquals(71, first.getAsInteger(HourlyEntry.COLUMN_HUMIDITY).intValue());
+        assertEquals(1, first.getAsInteger(HourlyEntry.COLUMN_DEGREES).intValue());
+
+        assertEquals(14.37, WeatherContract.fromFixedPoint(
+                first.getAsInteger(HourlyEntry.COLUMN_TEMP), HourlyEntry.TEMP_SCALE), 0.001);
+        assertEquals(TEST_TIME + 39 * OwmFixtures.STEP_SECONDS,
+                steps.get(39).getAsLong(HourlyEntry.COLUMN_TIME).longValue());
+    }
+
+    public void testIncompleteStepsAreDropped() throws IOException {
+        String json = "{\"list\":[{\"dt\":" + TEST_TIME + ",\"main\":{\"temp\":1.0}}]}";
+        assertEquals(0, HourlyForecastParser.parse(new StringReader(json), TEST_LOCATION_ID).size());
+    }
+
+    public void testMalformedForecastThrows() {
+        try {
+            HourlyForecastParser.parse(new StringReader("{\"list\":{\"dt\":1}}"), TEST_LOCATION_ID);
+            fail("Error: A list that isn't an array should have been rejected");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.SharedPreferences;
+import android.content.SyncResult;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TestSunshineSyncAdapter extends AndroidTestCase {
+    // A location no other test stores, so the sync has to insert it
+    private static final String TEST_LOCATION = "batch-failure-test";
+
+    private String mPreviousLocation;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPreviousLocation = Utility.getPreferredLocation(mContext);
+        setPreferredLocation(TEST_LOCATION);
+        deleteTestLocation();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SunshineSyncAdapter.setForecastSource(null);
+        deleteTestLocation();
+        mContext.getSharedPreferences(SyncCircuitBreaker.PREFS_NAME, 0).edit().clear().commit();
+        setPreferredLocation(mPreviousLocation);
+        Utility.resetLocationStatus(mContext);
+        super.tearDown();
+    }
+
+    public void testFailedBatchReportsFailure() throws Exception {
+        // SQLite stores NaN as NULL, so inserting the location breaks its NOT NULL constraint
+        // and the whole batch is rolled back
+        JSONObject forecast = new JSONObject(OwmFixtures.dailyForecast(14));
+        forecast.getJSONObject("city").getJSONObject("coord").put("lat", "NaN");
+        SunshineSyncAdapter.setForecastSource(new FixtureForecastSource(
+                Collections.singletonMap(FixtureForecastSource.DEFAULT_FIXTURE,
+                        forecast.toString())));
+        SyncMetricsLog.getInstance().clear();
+        // Left over from an earlier, successful sync
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putInt(mContext.getString(R.string.pref_location_status_key),
+                        SunshineSyncAdapter.LOCATION_STATUS_OK)
+                .commit();
+
+        SyncResult syncResult = new SyncResult();
+        new SunshineSyncAdapter(mContext, false).onPerformSync(null, new Bundle(),
+                WeatherContract.CONTENT_AUTHORITY, null, syncResult);
+
+        assertEquals("Error: A failed write should not report the location as OK",
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN, Utility.getLocationStatus(mContext));
+        List<SyncMetrics> metrics = SyncMetricsLog.getInstance().snapshot();
+        assertEquals(1, metrics.size());
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN,
+                metrics.get(0).getLocationStatus());
+        assertEquals("Error: A failed write should count as a failed sync",
+                1, syncResult.stats.numIoExceptions);
+        assertEquals("Error: A failed write is not the server's fault",
+                0, new SyncCircuitBreaker(mContext).getFailures(TEST_LOCATION));
+    }
+
+    private void setPreferredLocation(String location) {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        editor.putString(mContext.getString(R.string.pref_location_key), location);
+        editor.commit();
+    }
+
+    private void deleteTestLocation() {
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[] {TEST_LOCATION});
+    }
+}
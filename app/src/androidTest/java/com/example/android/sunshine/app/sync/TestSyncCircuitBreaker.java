@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+
+/*
+    Walks the circuit breaker through its states with a fake clock, so no test ever sleeps.
+ */
+public class TestSyncCircuitBreaker extends AndroidTestCase {
+    private static final String PREFS_NAME = "test_sync_circuit_breaker";
+    private static final String LOCATION = "94043";
+    private static final String OTHER_LOCATION = "London, UK";
+
+    private static class FakeClock implements SyncCircuitBreaker.Clock {
+        long now = 1419033600000L;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private SharedPreferences mPrefs;
+    private FakeClock mClock;
+    private SyncCircuitBreaker mBreaker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+        mClock = new FakeClock();
+        mBreaker = newBreaker();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().clear().commit();
+        super.tearDown();
+    }
+
+    private SyncCircuitBreaker newBreaker() {
+        return new SyncCircuitBreaker(mPrefs, mClock, new Random(42));
+    }
+
+    public void testOpensAfterThreshold() {
+        for (int i = 0; i < SyncCircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            assertTrue(mBreaker.allowRequest(LOCATION));
+            mBreaker.onFailure(LOCATION);
+            assertEquals(SyncCircuitBreaker.STATE_CLOSED, mBreaker.getState(LOCATION));
+        }
+        assertTrue(mBreaker.allowRequest(LOCATION));
+        mBreaker.onFailure(LOCATION);
+
+        assertEquals(SyncCircuitBreaker.STATE_OPEN, mBreaker.getState(LOCATION));
+        assertFalse("Error: An open breaker must refuse requests",
+                mBreaker.allowRequest(LOCATION));
+        assertTrue("Error: Breakers are per location", mBreaker.allowRequest(OTHER_LOCATION));
+    }
+
+    public void testHalfOpenProbeSuccessCloses() {
+        open();
+        mClock.now = mBreaker.getRetryAt(LOCATION);
+
+        assertTrue("Error: The breaker should let a probe through once the delay passed",
+                mBreaker.allowRequest(LOCATION));
+        assertEquals(SyncCircuitBreaker.STATE_HALF_OPEN, mBreaker.getState(LOCATION));
+        assertFalse("Error: Only one probe may be in flight", mBreaker.allowRequest(LOCATION));
+
+        mBreaker.onSuccess(LOCATION);
+        assertEquals(SyncCircuitBreaker.STATE_CLOSED, mBreaker.getState(LOCATION));
+        assertEquals(0, mBreaker.getFailures(LOCATION));
+        assertTrue(mBreaker.allowRequest(LOCATION));
+    }
+
+    public void testHalfOpenProbeFailureReopensWithLongerDelay() {
+        open();
+        long firstDelay = mBreaker.getRetryAt(LOCATION) - mClock.now;
+        mClock.now = mBreaker.getRetryAt(LOCATION);
+
+        assertTrue(mBreaker.allowRequest(LOCATION));
+        mBreaker.onFailure(LOCATION);
+
+        assertEquals(SyncCircuitBreaker.STATE_OPEN, mBreaker.getState(LOCATION));
+        long secondDelay = mBreaker.getRetryAt(LOCATION) - mClock.now;
+        // With equal jitter each delay lies in [d/2, d), and d doubles on every failure
+        assertTrue("Error: Delay did not grow: " + firstDelay + " then " + secondDelay,
+                secondDelay >= SyncCircuitBreaker.BASE_DELAY_MILLIS);
+        assertTrue(firstDelay < SyncCircuitBreaker.BASE_DELAY_MILLIS);
+    }
+
+    public void testDelayIsJitteredAndCapped() {
+        for (int failures = SyncCircuitBreaker.FAILURE_THRESHOLD; failures < 64; failures++) {
+            long delay = mBreaker.computeDelay(failures);
+            long ceiling = Math.min(SyncCircuitBreaker.MAX_DELAY_MILLIS,
+                    failures - SyncCircuitBreaker.FAILURE_THRESHOLD >= 30
+                            ? SyncCircuitBreaker.MAX_DELAY_MILLIS
+                            : SyncCircuitBreaker.BASE_DELAY_MILLIS
+                                    << (failures - SyncCircuitBreaker.FAILURE_THRESHOLD));
+            assertTrue("Error: Delay " + delay + " below half of " + ceiling,
+                    delay >= ceiling / 2);
+            assertTrue("Error: Delay " + delay + " above " + ceiling, delay <= ceiling);
+        }
+    }
+
+    public void testStateSurvivesProcessDeath() {
+        open();
+        long retryAt = mBreaker.getRetryAt(LOCATION);
+
+        // A new instance over the same preferences is what a restarted process would see
+        SyncCircuitBreaker restored = newBreaker();
+        assertEquals(SyncCircuitBreaker.STATE_OPEN, restored.getState(LOCATION));
+        assertEquals(retryAt, restored.getRetryAt(LOCATION));
+        assertFalse(restored.allowRequest(LOCATION));
+    }
+
+    public void testAbandonedProbeTimesOut() {
+        open();
+        mClock.now = mBreaker.getRetryAt(LOCATION);
+        assertTrue(mBreaker.allowRequest(LOCATION));
+
+        // The probing process died without reporting back
+        mClock.now += SyncCircuitBreaker.PROBE_TIMEOUT_MILLIS;
+        assertTrue("Error: A stale probe should not block the breaker forever",
+                newBreaker().allowRequest(LOCATION));
+    }
+
+    private void open() {
+        for (int i = 0; i < SyncCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            mBreaker.onFailure(LOCATION);
+        }
+        assertEquals(SyncCircuitBreaker.STATE_OPEN, mBreaker.getState(LOCATION));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.Collections;
+
+/*
+    Runs the whole sync path against recorded payloads, either straight from memory or through
+    a local HTTP stub, and logs the throughput.  Nothing here needs network access, so the
+    numbers are comparable from one CI run to the next.
+ */
+public class TestSyncThroughput extends AndroidTestCase {
+    public static final String LOG_TAG = TestSyncThroughput.class.getSimpleName();
+
+    private static final int NUM_DAYS = 14;
+    // Five days of 3-hour steps, as OWM sends
+    private static final int NUM_STEPS = 40;
+    private static final int SYNC_RUNS = 20;
+
+    @Override
+    protected void tearDown() throws Exception {
+        SunshineSyncAdapter.setForecastSource(null);
+        super.tearDown();
+    }
+
+    public void testFixtureSourceThroughput() {
+        SunshineSyncAdapter.setForecastSource(new FixtureForecastSource(
+                Collections.singletonMap(FixtureForecastSource.DEFAULT_FIXTURE,
+                        OwmFixtures.dailyForecast(NUM_DAYS)),
+                Collections.singletonMap(FixtureForecastSource.DEFAULT_FIXTURE,
+                        OwmFixtures.hourlyForecast(firstStepTime(), NUM_STEPS))));
+
+        runSyncs("fixture");
+    }
+
+    public void testStubServerThroughput() throws Exception {
+        ForecastStubServer server = new ForecastStubServer();
+        server.setPayload(FixtureForecastSource.DEFAULT_FIXTURE, OwmFixtures.dailyForecast(NUM_DAYS));
+        server.setHourlyPayload(FixtureForecastSource.DEFAULT_FIXTURE,
+                OwmFixtures.hourlyForecast(firstStepTime(), NUM_STEPS));
+        // Roughly a congested 3G link
+        server.setLatencyMillis(50);
+        server.setBytesPerSecond(256 * 1024);
+        server.start();
+        try {
+            SunshineSyncAdapter.setForecastSource(new HttpForecastSource(server.getBaseUrl()));
+            runSyncs("stub");
+            assertEquals("Error: Every sync should have fetched the daily and hourly forecasts",
+                    2 * SYNC_RUNS, server.getRequestCount());
+            assertTrue("Error: Connections were not reused across syncs, "
+                            + server.getConnectionCount() + " opened",
+                    server.getConnectionCount() < SYNC_RUNS);
+            for (SyncMetrics metrics : SyncMetricsLog.getInstance().snapshot()) {
+                assertTrue("Error: Response was not compressed: " + metrics,
+                        metrics.getBytesReceived() < metrics.getBytesDecoded());
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private void runSyncs(String label) {
+        SyncMetricsLog.getInstance().clear();
+        SunshineSyncAdapter adapter = new SunshineSyncAdapter(mContext, false);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SYNC_RUNS; i++) {
+            adapter.onPerformSync(null, new Bundle(),
+                    WeatherContract.CONTENT_AUTHORITY, null, new SyncResult());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        for (SyncMetrics metrics : SyncMetricsLog.getInstance().snapshot()) {
+            assertEquals("Error: Sync did not complete: " + metrics,
+                    SunshineSyncAdapter.LOCATION_STATUS_OK, metrics.getLocationStatus());
+        }
+        Log.i(LOG_TAG, label + ": " + SYNC_RUNS + " syncs in " + elapsedMillis + "ms, "
+                + (SYNC_RUNS * 1000f / Math.max(1, elapsedMillis)) + " syncs/s");
+        Log.i(LOG_TAG, SyncMetricsLog.getInstance().exportJson());
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation(
+                        Utility.getPreferredLocation(mContext)),
+                null, null, null, null);
+        assertTrue("Error: No forecast stored after syncing", cursor.getCount() > 0);
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                WeatherContract.HourlyEntry.buildHourlyLocation(
+                        Utility.getPreferredLocation(mContext)),
+                null, null, null, null);
+        assertEquals("Error: Hourly forecast not stored after syncing",
+                NUM_STEPS, cursor.getCount());
+        cursor.close();
+    }
+
+    // The start of the current 3-hour step, so no fixture step has ended yet
+    private static long firstStepTime() {
+        long now = System.currentTimeMillis() / 1000;
+        return now - now % OwmFixtures.STEP_SECONDS;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gets every art of the selected art pack into {@link WeatherArtCache}, at every size class,
+ * before anything binds it, so that lists show the new pack straight from memory rather than
+ * swapping placeholders for art as each condition comes off the network.
+ *
+ * A prefetch fetches each art once, a few at a time, and decodes it to every size class from
+ * Glide's copy of the download.  Once the pack's own art is cached, all of it, the pack is
+ * published as ready in {@link R.string#pref_art_pack_ready_key}; art the cache stood in for
+ * with the bundled pack doesn't count.  The weather lists are told to rebind as soon as the pack
+ * changes, and again when its prefetch ends, whether it completed or not.
+ */
+public class ArtPackPrefetcher {
+    private static final String LOG_TAG = ArtPackPrefetcher.class.getSimpleName();
+
+    // Art fetched at once; enough to hide the round trips without crowding a slow connection
+    private static final int CONCURRENCY = 3;
+
+    private static final int[] SIZE_CLASSES = {
+            WeatherArtCache.SIZE_LIST,
+            WeatherArtCache.SIZE_LARGE,
+            WeatherArtCache.SIZE_NOTIFICATION,
+            WeatherArtCache.SIZE_WEARABLE
+    };
+
+    private static final ExecutorService sCoordinator = Executors.newSingleThreadExecutor();
+    private static final ExecutorService sWorkers = Executors.newFixedThreadPool(CONCURRENCY);
+
+    // Bumped by every prefetch, so that one overtaken by a newer pack stops early and never
+    // publishes its pack as ready
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+
+    private ArtPackPrefetcher() {
+    }
+
+    /**
+     * Starts caching the selected art pack in the background.  Call it when the art pack
+     * changes; it is cheap when the art is already on disk.
+     */
+    public static void prefetch(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final int generation = sGeneration.incrementAndGet();
+        final String artPack = Utility.getArtPack(appContext);
+        setReadyArtPack(appContext, null);
+        // Lists switch to the new pack at once, showing whatever art is already cached
+        notifyWeatherLists(appContext);
+
+        sCoordinator.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtime();
+                final WeatherArtCache cache = WeatherArtCache.getInstance(appContext);
+                cache.dropOtherPacks();
+
+                List<Future<Boolean>> fetches = new ArrayList<Future<Boolean>>();
+                for (final int weatherId : WeatherArtCache.ART_WEATHER_IDS) {
+                    fetches.add(sWorkers.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            for (int sizeClass : SIZE_CLASSES) {
+                                if (generation != sGeneration.get()) {
+                                    return false;
+                                }
+                                // Stand-in art is handed out but never cached
+                                if (cache.get(weatherId, sizeClass) == null
+                                        || cache.getCached(weatherId, sizeClass) == null) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    }));
+                }
+
+                boolean complete = true;
+                for (Future<Boolean> fetch : fetches) {
+                    try {
+                        complete &= fetch.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        Log.e(LOG_TAG, "Error prefetching " + artPack, e);
+                        complete = false;
+                    }
+                }
+
+                if (generation != sGeneration.get()) {
+                    // The newer prefetch publishes and notifies for its own pack
+                    Log.d(LOG_TAG, "Prefetch of " + artPack + " was superseded");
+                    return;
+                }
+                if (complete && artPack.equals(Utility.getArtPack(appContext))) {
+                    setReadyArtPack(appContext, artPack);
+                    Log.d(LOG_TAG, "Prefetched " + artPack + " in "
+                            + (SystemClock.elapsedRealtime() - start) + "ms");
+                } else {
+                    Log.d(LOG_TAG, "Prefetch of " + artPack + " did not complete");
+                }
+                // Lists rebind with what was cached: all of it from memory if it completed
+                notifyWeatherLists(appContext);
+            }
+        });
+    }
+
+    /**
+     * @return whether every art of the selected art pack is cached.
+     */
+    public static boolean isReady(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String readyArtPack = prefs.getString(context.getString(R.string.pref_art_pack_ready_key), null);
+        return Utility.getArtPack(context).equals(readyArtPack);
+    }
+
+    private static void notifyWeatherLists(Context context) {
+        context.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+    }
+
+    private static void setReadyArtPack(Context context, String artPack) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = prefs.edit();
+        String key = context.getString(R.string.pref_art_pack_ready_key);
+        if (artPack != null) {
+            editor.putString(key, artPack);
+        } else {
+            editor.remove(key);
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a file whole or not at all.  The content goes to a temporary file beside it, which then
+ * replaces it in a single rename, so a reader, in this process or another, sees either the old
+ * file or the new one and never part of either.
+ */
+public class AtomicFileWriter {
+
+    /**
+     * Produces the content of a file.
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Replaces file with the content, creating its directory if needed.  If anything fails the
+     * file is left as it was.
+     */
+    public static void write(File file, Content content) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // Named after the thread, so that concurrent writers of one file never share it
+        File partial = new File(directory,
+                file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        boolean written = false;
+        try {
+            OutputStream out = new FileOutputStream(partial);
+            try {
+                content.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!partial.renameTo(file)) {
+                throw new IOException("Cannot rename " + partial + " to " + file);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                partial.delete();
+            }
+        }
+    }
+}
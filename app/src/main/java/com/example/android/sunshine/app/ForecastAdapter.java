@@ -19,9 +19,11 @@ import android.content.Context;
 import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -29,9 +31,10 @@ import android.widget.Checkable;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.ArrayList;
+
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
@@ -49,6 +52,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
+    final private WeatherArtCache mArtCache;
+
+    // Item views inflated ahead of time by preinflate(), by view type
+    final private SparseArray<ArrayList<View>> mPreinflated = new SparseArray<ArrayList<View>>();
 
     /**
      * Cache of the children views for a forecast list item.
@@ -88,10 +95,48 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        mArtCache = WeatherArtCache.getInstance(context);
+        // Before the ItemChoiceManager registers its observer, after which this can't change
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
 
+    /**
+     * Inflates the item views of the first screen on a background thread, so that the first
+     * layout only has to bind them, and lets the RecyclerView's pool keep as many future day
+     * views as fit on a screen, so that scrolling never has to inflate again.
+     *
+     * @param futureDays Future day rows to inflate, about as many as fit on a screen.
+     */
+    public void preinflate(RecyclerView recyclerView, int futureDays) {
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_FUTURE_DAY, futureDays);
+
+        // Views come back on the main thread.  The background inflater skips AppCompat's view
+        // substitutions, which these layouts don't depend on.
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(recyclerView.getContext());
+        AsyncLayoutInflater.OnInflateFinishedListener listener =
+                new AsyncLayoutInflater.OnInflateFinishedListener() {
+                    @Override
+                    public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                        int viewType = resid == R.layout.list_item_forecast_today
+                                ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
+                        ArrayList<View> views = mPreinflated.get(viewType);
+                        if (views == null) {
+                            views = new ArrayList<View>();
+                            mPreinflated.put(viewType, views);
+                        }
+                        views.add(view);
+                    }
+                };
+        // The activity only says whether to use the today layout after this runs, so it's
+        // inflated either way; a single spare view is cheaper than inflating it on the first layout
+        inflater.inflate(R.layout.list_item_forecast_today, recyclerView, listener);
+        for (int i = 0; i < futureDays; i++) {
+            inflater.inflate(R.layout.list_item_forecast, recyclerView, listener);
+        }
+    }
+
     /*
         This takes advantage of the fact that the viewGroup passed to onCreateViewHolder is the
         RecyclerView that will be used to contain the view, so that it can get the current
@@ -114,7 +159,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
                     break;
                 }
             }
-            View view = LayoutInflater.from(viewGroup.getContext()).inflate(layoutId, viewGroup, false);
+            View view;
+            ArrayList<View> preinflated = mPreinflated.get(viewType);
+            if (preinflated != null && !preinflated.isEmpty()) {
+                view = preinflated.remove(preinflated.size() - 1);
+            } else {
+                view = LayoutInflater.from(viewGroup.getContext()).inflate(layoutId, viewGroup, false);
+            }
             view.setFocusable(true);
             return new ForecastAdapterViewHolder(view);
         } else {
@@ -127,27 +178,22 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mCursor.moveToPosition(position);
         int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
         int defaultImage;
+        int artSize;
         boolean useLongToday;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
                 defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
+                artSize = WeatherArtCache.SIZE_LARGE;
                 useLongToday = true;
                 break;
             default:
                 defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
+                artSize = WeatherArtCache.SIZE_LIST;
                 useLongToday = false;
         }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
-            forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
-        } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
-                    .crossFade()
-                    .into(forecastAdapterViewHolder.mIconView);
-        }
+        mArtCache.loadInto(forecastAdapterViewHolder.mIconView, weatherId, artSize, defaultImage);
 
         // this enables better animations. even if we lose state due to a device rotation,
         // the animator can use this to re-find the original view
@@ -206,6 +252,16 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return (position == 0 && mUseTodayLayout) ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
     }
 
+    /**
+     * @return the {@link WeatherContract.WeatherEntry#_ID} of the row.  A sync replaces the rows
+     *         it refreshes, so their ids change along with their content.
+     */
+    @Override
+    public long getItemId(int position) {
+        if ( null == mCursor || !mCursor.moveToPosition(position) ) return RecyclerView.NO_ID;
+        return mCursor.getLong(ForecastFragment.COL_WEATHER_ID);
+    }
+
     @Override
     public int getItemCount() {
         if ( null == mCursor ) return 0;
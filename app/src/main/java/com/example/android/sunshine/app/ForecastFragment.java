@@ -34,7 +34,9 @@ import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -59,13 +61,15 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // The forecast as of the last sync, shown until the loader delivers
+    private Cursor mSnapshotCursor;
 
     private static final String SELECTED_KEY = "selected_position";
 
     private static final int FORECAST_LOADER = 0;
     // For the forecast view we're showing only a small subset of the stored data.
     // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
+    static final String[] FORECAST_COLUMNS = {
             // In this case the id needs to be fully qualified with a table name, since
             // the content provider joins the location & weather tables in the background
             // (both have an _id column)
@@ -175,8 +179,21 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // Get a reference to the RecyclerView, and attach this adapter to it.
         mRecyclerView = (RecyclerView) rootView.findViewById(R.id.recyclerview_forecast);
 
-        // Set the layout manager
-        mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        // Rows of the first screen, from the row height the list items are laid out around
+        TypedValue rowHeight = new TypedValue();
+        getActivity().getTheme().resolveAttribute(android.R.attr.listPreferredItemHeight, rowHeight, true);
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        final int rowPixels = (int) rowHeight.getDimension(metrics);
+        int screenRows = metrics.heightPixels / Math.max(1, rowPixels) + 1;
+
+        // Set the layout manager.  It lays out one row past the edge, so the next row to scroll
+        // in is already bound rather than bound in the frame that shows it.
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()) {
+            @Override
+            protected int getExtraLayoutSpace(RecyclerView.State state) {
+                return rowPixels;
+            }
+        });
         View emptyView = rootView.findViewById(R.id.recyclerview_forecast_empty);
 
         // use this setting to improve performance if you know that changes
@@ -199,6 +216,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
+        mForecastAdapter.preinflate(mRecyclerView, screenRows);
 
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
@@ -259,6 +277,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
+        // Show the forecast as of the last sync right away, rather than an empty list for the
+        // time it takes the loader to open the database and query it
+        if (mForecastAdapter.getCursor() == null) {
+            Cursor snapshot = ForecastSnapshot.read(getActivity(),
+                    Utility.getPreferredLocation(getActivity()), FORECAST_COLUMNS);
+            if (snapshot != null && snapshot.getCount() > 0) {
+                mSnapshotCursor = snapshot;
+                mForecastAdapter.swapCursor(snapshot);
+            } else if (snapshot != null) {
+                snapshot.close();
+            }
+        }
         getLoaderManager().initLoader(FORECAST_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
@@ -326,7 +356,9 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        // Stable ids carry over from the snapshot, so its rows are rebound in place
         mForecastAdapter.swapCursor(data);
+        closeSnapshot();
         updateEmptyView();
         if ( data.getCount() == 0 ) {
             getActivity().supportStartPostponedEnterTransition();
@@ -374,9 +406,17 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
 
+    private void closeSnapshot() {
+        if (mSnapshotCursor != null) {
+            mSnapshotCursor.close();
+            mSnapshotCursor = null;
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
+        closeSnapshot();
         if (null != mRecyclerView) {
             mRecyclerView.clearOnScrollListeners();
         }
@@ -385,6 +425,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         mForecastAdapter.swapCursor(null);
+        closeSnapshot();
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The forecast list's rows as of the last sync, in a small file the list can show on launch
+ * before its loader has opened the database.  Values are kept as strings under their column
+ * names; a snapshot written for other columns or another location is ignored.
+ */
+public class ForecastSnapshot {
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot";
+    private static final int VERSION = 1;
+
+    private ForecastSnapshot() {
+    }
+
+    /**
+     * Snapshots the forecast list of a location as it now stands in the database.  Call it from
+     * a background thread after every sync that wrote the forecast.
+     */
+    public static void write(Context context, final String locationSetting) {
+        final Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, System.currentTimeMillis()),
+                ForecastFragment.FORECAST_COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
+
+        try {
+            AtomicFileWriter.write(getFile(context), new AtomicFileWriter.Content() {
+                @Override
+                public void writeTo(OutputStream stream) throws IOException {
+                    // Buffered, or every field would be a write of its own
+                    DataOutputStream out =
+                            new DataOutputStream(new BufferedOutputStream(stream));
+                    String[] columns = ForecastFragment.FORECAST_COLUMNS;
+                    out.writeInt(VERSION);
+                    out.writeUTF(locationSetting);
+                    out.writeInt(columns.length);
+                    for (String column : columns) {
+                        out.writeUTF(column);
+                    }
+                    out.writeInt(cursor.getCount());
+                    while (cursor.moveToNext()) {
+                        for (int i = 0; i < columns.length; i++) {
+                            boolean isNull = cursor.isNull(i);
+                            out.writeBoolean(isNull);
+                            if (!isNull) {
+                                out.writeUTF(cursor.getString(i));
+                            }
+                        }
+                    }
+                    out.flush();
+                }
+            });
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing forecast snapshot", e);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the snapshot of a location's forecast list, from today on, as a cursor over the
+     *         given columns, or null if there is no usable snapshot.  Reads a file of a couple
+     *         of kilobytes, in one buffered read; that is the one read the launch path makes on
+     *         the main thread.
+     */
+    static Cursor read(Context context, String locationSetting, String[] columns) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION || !in.readUTF().equals(locationSetting)) {
+                    return null;
+                }
+                String[] snapshotColumns = new String[in.readInt()];
+                for (int i = 0; i < snapshotColumns.length; i++) {
+                    snapshotColumns[i] = in.readUTF();
+                }
+                if (!Arrays.equals(snapshotColumns, columns)) {
+                    return null;
+                }
+
+                int dateColumn = Arrays.asList(columns)
+                        .indexOf(WeatherContract.WeatherEntry.COLUMN_DATE);
+                long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+                int rowCount = in.readInt();
+                MatrixCursor cursor = new MatrixCursor(columns, rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    String[] values = new String[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        values[i] = in.readBoolean() ? null : in.readUTF();
+                    }
+                    // Days that have passed since the snapshot are no longer listed
+                    if (dateColumn == -1 || values[dateColumn] == null
+                            || Long.parseLong(values[dateColumn]) >= today) {
+                        cursor.addRow(values);
+                    }
+                }
+                return cursor;
+            } finally {
+                in.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.e(LOG_TAG, "Dropping unreadable forecast snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+}
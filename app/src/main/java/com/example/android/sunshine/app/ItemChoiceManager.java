@@ -15,70 +15,59 @@
  */
 package com.example.android.sunshine.app;
 
-import android.os.Build;
 import android.os.Bundle;
-import android.os.Parcel;
-import android.os.Parcelable;
-import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.util.SparseBooleanArray;
 import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which items have been selected.  Items are keyed by
+ * their stable id when the adapter has stable ids, and by position otherwise, in a primitive
+ * map from key to the position the item was last seen at.  Whether an item is checked is then a
+ * single hash lookup, whatever happened to the data set since.
  */
 public class ItemChoiceManager {
-    private final String LOG_TAG = MainActivity.class.getSimpleName();
-    private final String SELECTED_ITEMS_KEY = "SIK";
+    private final String LOG_TAG = ItemChoiceManager.class.getSimpleName();
+    private final String SELECTED_KEYS_KEY = "SIK";
+    private final String SELECTED_POSITIONS_KEY = "SIP";
     private int mChoiceMode;
 
-    private RecyclerView.Adapter mAdapter;
-    private RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
+    private final RecyclerView.Adapter mAdapter;
+    private final RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
         @Override
         public void onChanged() {
             super.onChanged();
-            if (mAdapter != null && mAdapter.hasStableIds())
-                confirmCheckedPositionsById(mAdapter.getItemCount());
+            if (mAdapter.hasStableIds())
+                confirmCheckedPositionsById();
         }
     };
 
-    private ItemChoiceManager() {
-    }
-
-    ;
-
-    public ItemChoiceManager(RecyclerView.Adapter adapter) {
-        mAdapter = adapter;
-    }
-
     /**
-     * How many positions in either direction we will search to try to
-     * find a checked item with a stable ID that moved position across
-     * a data set change. If the item isn't found it will be unselected.
+     * Running state of which items are currently checked.  If there is an entry for a key, the
+     * item is checked and the value holds its last known position in the adapter.
      */
-    private static final int CHECK_POSITION_SEARCH_DISTANCE = 20;
+    final LongIntMap mCheckedKeys = new LongIntMap();
 
     /**
-     * Running state of which positions are currently checked
+     * Scratch index from stable id to position, only filled when a data set change moved a
+     * checked item.
      */
-    SparseBooleanArray mCheckStates = new SparseBooleanArray();
+    private final LongIntMap mPositionsById = new LongIntMap();
 
     /**
-     * Running state of which IDs are currently checked.
-     * If there is a value for a given key, the checked state for that ID is true
-     * and the value holds the last known position in the adapter for that id.
+     * Call before the adapter is attached, and after it settled whether it has stable ids.
      */
-    LongSparseArray<Integer> mCheckedIdStates = new LongSparseArray<Integer>();
+    public ItemChoiceManager(RecyclerView.Adapter adapter) {
+        mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
+    }
 
     public void onClick(RecyclerView.ViewHolder vh) {
         if (mChoiceMode == AbsListView.CHOICE_MODE_NONE)
             return;
 
-        int checkedItemCount = mCheckStates.size();
         int position = vh.getAdapterPosition();
 
         if (position == RecyclerView.NO_POSITION) {
@@ -87,38 +76,48 @@ public class ItemChoiceManager {
         }
 
         switch (mChoiceMode) {
-            case AbsListView.CHOICE_MODE_NONE:
-                break;
             case AbsListView.CHOICE_MODE_SINGLE: {
-                boolean checked = mCheckStates.get(position, false);
-                if (!checked) {
-                    for (int i = 0; i < checkedItemCount; i++) {
-                        mAdapter.notifyItemChanged(mCheckStates.keyAt(i));
-                    }
-                    mCheckStates.clear();
-                    mCheckStates.put(position, true);
-                    mCheckedIdStates.clear();
-                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
-                }
-                // We directly call onBindViewHolder here because notifying that an item has
-                // changed on an item that has the focus causes it to lose focus, which makes
-                // keyboard navigation a bit annoying
-                mAdapter.onBindViewHolder(vh, position);
+                setItemChecked(position, true);
                 break;
             }
             case AbsListView.CHOICE_MODE_MULTIPLE: {
-                boolean checked = mCheckStates.get(position, false);
-                mCheckStates.put(position, !checked);
-                // We directly call onBindViewHolder here because notifying that an item has
-                // changed on an item that has the focus causes it to lose focus, which makes
-                // keyboard navigation a bit annoying
-                mAdapter.onBindViewHolder(vh, position);
+                setItemChecked(position, !isItemChecked(position));
                 break;
             }
-            case AbsListView.CHOICE_MODE_MULTIPLE_MODAL: {
+        }
+        // We directly call onBindViewHolder here because notifying that an item has
+        // changed on an item that has the focus causes it to lose focus, which makes
+        // keyboard navigation a bit annoying
+        mAdapter.onBindViewHolder(vh, position);
+    }
+
+    /**
+     * Sets the checked state of the specified position.  In CHOICE_MODE_SINGLE, checking an item
+     * unchecks the one checked before, which is notified as changed.  The item itself isn't
+     * notified; rebind it.
+     */
+    public void setItemChecked(int position, boolean checked) {
+        switch (mChoiceMode) {
+            case AbsListView.CHOICE_MODE_NONE:
+                return;
+            case AbsListView.CHOICE_MODE_MULTIPLE_MODAL:
                 throw new RuntimeException("Multiple Modal not implemented in ItemChoiceManager.");
+        }
+
+        long key = getKey(position);
+        if (!checked) {
+            mCheckedKeys.remove(key);
+            return;
+        }
+        if (mChoiceMode == AbsListView.CHOICE_MODE_SINGLE && !mCheckedKeys.containsKey(key)) {
+            for (int slot = 0; slot < mCheckedKeys.capacity(); slot++) {
+                if (mCheckedKeys.isSlotUsed(slot)) {
+                    mAdapter.notifyItemChanged(mCheckedKeys.valueAt(slot));
+                }
             }
+            mCheckedKeys.clear();
         }
+        mCheckedKeys.put(key, position);
     }
 
     /**
@@ -146,45 +145,72 @@ public class ItemChoiceManager {
      * @see #setChoiceMode(int)
      */
     public boolean isItemChecked(int position) {
-        return mCheckStates.get(position);
+        return mCheckedKeys.containsKey(getKey(position));
     }
 
     void clearSelections() {
-        mCheckStates.clear();
-        mCheckedIdStates.clear();
+        mCheckedKeys.clear();
     }
 
-    void confirmCheckedPositionsById(int oldItemCount) {
-        // Clear out the positional check states, we'll rebuild it below from IDs.
-        mCheckStates.clear();
-
-        for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
-            final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
+    private long getKey(int position) {
+        return mAdapter.hasStableIds() ? mAdapter.getItemId(position) : position;
+    }
 
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
+    /**
+     * Brings the last known positions of the checked items up to date after a data set change.
+     * An item still at its position costs one id lookup.  Only if one moved is an index of the
+     * new ids built, once, to find it in O(1) along with any other that moved.  An item whose id
+     * is gone keeps its position, as a position based choice would: a sync replaces the rows it
+     * refreshes with new ids in place.
+     */
+    void confirmCheckedPositionsById() {
+        int itemCount = mAdapter.getItemCount();
+        boolean indexed = false;
+        LongIntMap moved = null;
+
+        for (int slot = 0; slot < mCheckedKeys.capacity(); slot++) {
+            if (!mCheckedKeys.isSlotUsed(slot)) {
+                continue;
+            }
+            long id = mCheckedKeys.keyAt(slot);
+            int lastPos = mCheckedKeys.valueAt(slot);
+            if (lastPos < itemCount && mAdapter.getItemId(lastPos) == id) {
+                continue;
+            }
+
+            if (!indexed) {
+                mPositionsById.clear();
+                for (int position = 0; position < itemCount; position++) {
+                    mPositionsById.put(mAdapter.getItemId(position), position);
                 }
+                indexed = true;
+            }
+            // Rekeying while iterating would reorder the table, so collect the changes first
+            if (moved == null) {
+                moved = new LongIntMap();
+            }
+            int newPos = mPositionsById.get(id, RecyclerView.NO_POSITION);
+            if (newPos != RecyclerView.NO_POSITION) {
+                mCheckedKeys.setValueAt(slot, newPos);
+            } else if (lastPos < itemCount) {
+                moved.put(id, lastPos);
             } else {
-                mCheckStates.put(lastPos, true);
+                moved.put(id, RecyclerView.NO_POSITION);
+            }
+        }
+
+        if (moved != null) {
+            for (int slot = 0; slot < moved.capacity(); slot++) {
+                if (!moved.isSlotUsed(slot)) {
+                    continue;
+                }
+                mCheckedKeys.remove(moved.keyAt(slot));
+                int position = moved.valueAt(slot);
+                if (position != RecyclerView.NO_POSITION) {
+                    mCheckedKeys.put(mAdapter.getItemId(position), position);
+                }
             }
+            mPositionsById.clear();
         }
     }
 
@@ -197,41 +223,45 @@ public class ItemChoiceManager {
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
-        byte[] states = savedInstanceState.getByteArray(SELECTED_ITEMS_KEY);
-        if ( null != states ) {
-            Parcel inParcel = Parcel.obtain();
-            inParcel.unmarshall(states, 0, states.length);
-            inParcel.setDataPosition(0);
-            mCheckStates = inParcel.readSparseBooleanArray();
-            final int numStates = inParcel.readInt();
-            mCheckedIdStates.clear();
-            for (int i=0; i<numStates; i++) {
-                final long key = inParcel.readLong();
-                final int value = inParcel.readInt();
-                mCheckedIdStates.put(key, value);
+        long[] keys = savedInstanceState.getLongArray(SELECTED_KEYS_KEY);
+        int[] positions = savedInstanceState.getIntArray(SELECTED_POSITIONS_KEY);
+        if ( null != keys && null != positions ) {
+            mCheckedKeys.clear();
+            for (int i = 0; i < keys.length; i++) {
+                mCheckedKeys.put(keys[i], positions[i]);
             }
         }
     }
 
     public void onSaveInstanceState(Bundle outState) {
-        Parcel outParcel = Parcel.obtain();
-        outParcel.writeSparseBooleanArray(mCheckStates);
-        final int numStates = mCheckedIdStates.size();
-        outParcel.writeInt(numStates);
-        for (int i=0; i<numStates; i++) {
-            outParcel.writeLong(mCheckedIdStates.keyAt(i));
-            outParcel.writeInt(mCheckedIdStates.valueAt(i));
+        int numStates = mCheckedKeys.size();
+        long[] keys = new long[numStates];
+        int[] positions = new int[numStates];
+        int i = 0;
+        for (int slot = 0; slot < mCheckedKeys.capacity(); slot++) {
+            if (mCheckedKeys.isSlotUsed(slot)) {
+                keys[i] = mCheckedKeys.keyAt(slot);
+                positions[i] = mCheckedKeys.valueAt(slot);
+                i++;
+            }
         }
-        byte[] states = outParcel.marshall();
-        outState.putByteArray(SELECTED_ITEMS_KEY, states);
-        outParcel.recycle();
+        outState.putLongArray(SELECTED_KEYS_KEY, keys);
+        outState.putIntArray(SELECTED_POSITIONS_KEY, positions);
     }
 
+    /**
+     * @return the position of a checked item, the lowest if several are, or NO_POSITION.
+     */
     public int getSelectedItemPosition() {
-        if ( mCheckStates.size() == 0 ) {
-            return RecyclerView.NO_POSITION;
-        } else {
-            return mCheckStates.keyAt(0);
+        int selected = RecyclerView.NO_POSITION;
+        for (int slot = 0; slot < mCheckedKeys.capacity(); slot++) {
+            if (mCheckedKeys.isSlotUsed(slot)) {
+                int position = mCheckedKeys.valueAt(slot);
+                if (selected == RecyclerView.NO_POSITION || position < selected) {
+                    selected = position;
+                }
+            }
         }
+        return selected;
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from long keys to int values, on primitive arrays.  Open addressing with linear
+ * probing, so get, put and remove are O(1) on average and nothing is boxed or allocated outside
+ * of growing the table.  Entries are iterated by slot: {@link #capacity()},
+ * {@link #isSlotUsed(int)}, {@link #keyAt(int)} and {@link #valueAt(int)}.
+ *
+ * Not thread safe.
+ */
+class LongIntMap {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private boolean[] mUsed;
+    private int mSize;
+
+    LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    boolean containsKey(long key) {
+        return mUsed[find(key)];
+    }
+
+    /**
+     * @return the value of the key, or valueIfAbsent if the map doesn't hold it.
+     */
+    int get(long key, int valueIfAbsent) {
+        int slot = find(key);
+        return mUsed[slot] ? mValues[slot] : valueIfAbsent;
+    }
+
+    void put(long key, int value) {
+        int slot = find(key);
+        if (mUsed[slot]) {
+            mValues[slot] = value;
+            return;
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mUsed[slot] = true;
+        // Kept at most half full, so probe runs stay short
+        if (++mSize * 2 > mKeys.length) {
+            resize(mKeys.length * 2);
+        }
+    }
+
+    /**
+     * @return whether the map held the key.
+     */
+    boolean remove(long key) {
+        int slot = find(key);
+        if (!mUsed[slot]) {
+            return false;
+        }
+        mUsed[slot] = false;
+        mSize--;
+
+        // Shift back the entries of the probe run that follows, so lookups never stop early
+        // at the hole this left
+        int mask = mKeys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; mUsed[next]; next = (next + 1) & mask) {
+            int home = hash(mKeys[next]) & mask;
+            // Move the entry unless its home lies cyclically in (hole, next]
+            boolean stays = hole <= next
+                    ? hole < home && home <= next
+                    : hole < home || home <= next;
+            if (!stays) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                mUsed[hole] = true;
+                mUsed[next] = false;
+                hole = next;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(mUsed, false);
+        mSize = 0;
+    }
+
+    int capacity() {
+        return mKeys.length;
+    }
+
+    boolean isSlotUsed(int slot) {
+        return mUsed[slot];
+    }
+
+    long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    int valueAt(int slot) {
+        return mValues[slot];
+    }
+
+    void setValueAt(int slot, int value) {
+        mValues[slot] = value;
+    }
+
+    // The slot holding the key, or the free slot where it would go
+    private int find(long key) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (mUsed[slot] && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        // Ids and positions are mostly sequential; spread them over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mUsed = new boolean[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        boolean[] used = mUsed;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                int slot = find(keys[i]);
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+                mUsed[slot] = true;
+            }
+        }
+    }
+}
@@ -89,8 +89,29 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
 
+        // Nothing below is needed to show the forecast, so it waits until the first frame is
+        // drawn: runnables posted to a view before it's attached run after its first traversal
+        getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinishing()) {
+                    onFirstFrame();
+                }
+            }
+        });
+    }
+
+    /**
+     * Startup work deferred until the forecast list is on screen.
+     */
+    private void onFirstFrame() {
         SunshineSyncAdapter.initializeSyncAdapter(this);
 
+        // A prefetch cut short, by going offline or by the process dying, picks up where it left
+        if (!ArtPackPrefetcher.isReady(this)) {
+            ArtPackPrefetcher.prefetch(this);
+        }
+
         // If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
         // skip the registration and this device will not receive any downstream messages from
         // our fake server. Because weather alerts are not a core feature of the app, this should
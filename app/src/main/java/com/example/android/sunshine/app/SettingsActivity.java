@@ -144,8 +144,9 @@ public class SettingsActivity extends PreferenceActivity
             Preference locationPreference = findPreference(getString(R.string.pref_location_key));
             bindPreferenceSummaryToValue(locationPreference);
         } else if ( key.equals(getString(R.string.pref_art_pack_key)) ) {
-            // art pack have changed. update lists of weather entries accordingly
-            getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            // art pack have changed. update lists of weather entries accordingly, and again
+            // once all of its art is cached
+            ArtPackPrefetcher.prefetch(this);
         }
     }
 
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The one place weather art is loaded from, for the app, the widgets, notifications and the
+ * wearable.  Art is always handed out already scaled to one of a few size classes, and comes
+ * from up to three tiers:
+ * <ol>
+ *     <li>Memory: an LRU of bitmaps, sized to a fraction of the heap.  Every caller asking for
+ *     the same art at the same size gets the same Bitmap instance.</li>
+ *     <li>Disk: raw ARGB pixels of every variant loaded so far, keyed by art pack, size class and
+ *     art name, so that reading one back is a file read and a pixel copy with nothing to
+ *     decode.</li>
+ *     <li>Source: the art pack's URL through Glide, or the bundled resource for the Sunshine
+ *     pack.  This is the only tier that decodes.  When the URL fails the bundled resource is
+ *     handed out instead, but kept in neither tier, so the pack's art is tried again next
+ *     time.</li>
+ * </ol>
+ * Concurrent requests for the same variant share a single load, so each asset is decoded once
+ * per size no matter how many consumers ask for it at once.
+ */
+public class WeatherArtCache {
+    private static final String LOG_TAG = WeatherArtCache.class.getSimpleName();
+
+    /** List rows and the detail widget: {@code R.dimen.list_icon}. */
+    public static final int SIZE_LIST = 0;
+    /** Today's list row and the detail pane: {@code R.dimen.today_icon}. */
+    public static final int SIZE_LARGE = 1;
+    /** The large icon of a notification. */
+    public static final int SIZE_NOTIFICATION = 2;
+    /** The icon sent to the wearable: {@code R.dimen.wearable_icon_size}. */
+    public static final int SIZE_WEARABLE = 3;
+    static final int SIZE_CLASS_COUNT = 4;
+
+    private static final String[] SIZE_NAMES = {"list", "large", "notification", "wearable"};
+
+    private static final String DIRECTORY = "weather_art";
+
+    // One weather id for each art name, to prefetch every variant of an art pack
+    static final int[] ART_WEATHER_IDS = {200, 300, 500, 600, 701, 800, 801, 802};
+
+    // Share of the heap the memory tier may take
+    private static final int MEMORY_FRACTION = 16;
+
+    private static WeatherArtCache sInstance;
+
+    /**
+     * Called on the main thread once art requested with {@link #load} is ready.
+     */
+    public interface Callback {
+        /**
+         * @param art The art, or null if it could not be loaded from any tier.
+         */
+        void onArtLoaded(Bitmap art);
+    }
+
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+    // { width, height } in pixels, by size class
+    private final int[][] mSizes = new int[SIZE_CLASS_COUNT][];
+    private final LruCache<String, Bitmap> mMemory;
+    // Loads under way, by key, so that a second request for the same variant waits on the first
+    private final Map<String, FutureTask<Bitmap>> mInFlight = new HashMap<String, FutureTask<Bitmap>>();
+
+    public static synchronized WeatherArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherArtCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WeatherArtCache(Context context) {
+        mContext = context;
+        Resources resources = context.getResources();
+        int listIcon = resources.getDimensionPixelSize(R.dimen.list_icon);
+        int todayIcon = resources.getDimensionPixelSize(R.dimen.today_icon);
+        int wearableIcon = resources.getDimensionPixelSize(R.dimen.wearable_icon_size);
+        mSizes[SIZE_LIST] = new int[]{listIcon, listIcon};
+        mSizes[SIZE_LARGE] = new int[]{todayIcon, todayIcon};
+        mSizes[SIZE_NOTIFICATION] = getLargeIconSize(resources);
+        mSizes[SIZE_WEARABLE] = new int[]{wearableIcon, wearableIcon};
+
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_FRACTION);
+        mMemory = new LruCache<String, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return Math.max(1, value.getRowBytes() * value.getHeight() / 1024);
+            }
+        };
+    }
+
+    /**
+     * @return the size art of a size class is scaled to fit, { width, height }, in pixels.
+     */
+    public int[] getSize(int sizeClass) {
+        return mSizes[sizeClass];
+    }
+
+    /**
+     * @return the art of a weather condition with the current art pack, if it is in memory, or
+     *         null.  Cheap enough for the main thread.
+     */
+    public Bitmap getFromMemory(int weatherId, int sizeClass) {
+        String key = getKey(weatherId, sizeClass);
+        return key == null ? null : mMemory.get(key);
+    }
+
+    /**
+     * @return the art of a weather condition with the current art pack, from memory or disk, or
+     *         null if it was never loaded.  Never touches the network or decodes an image, but
+     *         may read a file, so keep it off the main thread.
+     */
+    public Bitmap getCached(int weatherId, int sizeClass) {
+        String key = getKey(weatherId, sizeClass);
+        if (key == null) {
+            return null;
+        }
+        Bitmap art = mMemory.get(key);
+        if (art == null) {
+            art = readDisk(key);
+            if (art != null) {
+                mMemory.put(key, art);
+            }
+        }
+        return art;
+    }
+
+    /**
+     * @return the art of a weather condition with the current art pack, loading it through every
+     *         tier as needed, or null if it could not be loaded.  Blocks, possibly on the
+     *         network: background threads only.
+     */
+    public Bitmap get(final int weatherId, final int sizeClass) {
+        final String key = getKey(weatherId, sizeClass);
+        if (key == null) {
+            return null;
+        }
+        Bitmap art = mMemory.get(key);
+        if (art != null) {
+            return art;
+        }
+
+        FutureTask<Bitmap> task;
+        boolean owner = false;
+        synchronized (mInFlight) {
+            task = mInFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<Bitmap>(new Callable<Bitmap>() {
+                    @Override
+                    public Bitmap call() {
+                        return loadFromDiskOrSource(key, weatherId, sizeClass);
+                    }
+                });
+                mInFlight.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            try {
+                task.run();
+            } finally {
+                synchronized (mInFlight) {
+                    mInFlight.remove(key);
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error waiting for art " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the art of a weather condition in the background, then hands it to the callback on
+     * the main thread.  Art already in memory is handed over without leaving the caller's thread.
+     */
+    public void load(final int weatherId, final int sizeClass, final Callback callback) {
+        Bitmap art = getFromMemory(weatherId, sizeClass);
+        if (art != null) {
+            callback.onArtLoaded(art);
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap art = get(weatherId, sizeClass);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onArtLoaded(art);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows the art of a weather condition in an ImageView, from the main thread.  Art in memory
+     * is shown at once; otherwise the placeholder is, until the art is loaded.  The view may be
+     * rebound meanwhile, so only the latest request for it ever lands.
+     */
+    public void loadInto(final ImageView view, int weatherId, int sizeClass, int placeholderResId) {
+        final String key = getKey(weatherId, sizeClass);
+        view.setTag(key);
+        Bitmap art = key == null ? null : mMemory.get(key);
+        if (art != null) {
+            view.setImageBitmap(art);
+            return;
+        }
+        view.setImageResource(placeholderResId);
+        if (key == null) {
+            return;
+        }
+        load(weatherId, sizeClass, new Callback() {
+            @Override
+            public void onArtLoaded(Bitmap art) {
+                if (art != null && key.equals(view.getTag())) {
+                    view.setImageBitmap(art);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes what art packs other than the current one left on disk.  Blocks on the file
+     * system: background threads only.
+     */
+    void dropOtherPacks() {
+        String prefix = getPackPrefix();
+        File[] files = getDirectory().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().startsWith(prefix)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the memory tier.  The disk tier is left alone.
+     */
+    public void trimMemory() {
+        mMemory.evictAll();
+    }
+
+    private Bitmap loadFromDiskOrSource(String key, int weatherId, int sizeClass) {
+        Bitmap art = readDisk(key);
+        if (art == null) {
+            art = loadFromSource(weatherId, sizeClass);
+            if (art == null) {
+                // Shown, but never cached under the pack's key: the pack's own art is tried
+                // again on the next request
+                return loadBundled(weatherId, sizeClass);
+            }
+            try {
+                writeDisk(key, art);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error caching art " + key, e);
+            }
+        }
+        mMemory.put(key, art);
+        return art;
+    }
+
+    /**
+     * @return the art of the current art pack itself, or null if it could not be fetched.
+     */
+    private Bitmap loadFromSource(int weatherId, int sizeClass) {
+        if (Utility.usingLocalGraphics(mContext)) {
+            return loadBundled(weatherId, sizeClass);
+        }
+        int[] size = mSizes[sizeClass];
+        String artUrl = Utility.getArtUrlForWeatherCondition(mContext, weatherId);
+        try {
+            // Glide keeps the download so other size classes don't fetch it again, but
+            // not the decoded bitmap: that's this class's job
+            return Glide.with(mContext)
+                    .load(artUrl)
+                    .asBitmap()
+                    .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                    .skipMemoryCache(true)
+                    .fitCenter()
+                    .into(size[0], size[1]).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving art from " + artUrl, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the Sunshine pack's art, scaled down like any other, or null if it could not be
+     *         decoded.
+     */
+    private Bitmap loadBundled(int weatherId, int sizeClass) {
+        int[] size = mSizes[sizeClass];
+        // The Sunshine pack's list rows have their own, simpler icons
+        int resId = sizeClass == SIZE_LIST
+                ? Utility.getIconResourceForWeatherCondition(weatherId)
+                : Utility.getArtResourceForWeatherCondition(weatherId);
+        try {
+            return Glide.with(mContext)
+                    .load(resId)
+                    .asBitmap()
+                    .skipMemoryCache(true)
+                    .fitCenter()
+                    .into(size[0], size[1]).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving bundled art", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the size of a notification's large icon, { width, height }, in pixels.
+     */
+    private static int[] getLargeIconSize(Resources resources) {
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        @SuppressLint("InlinedApi")
+        int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        @SuppressLint("InlinedApi")
+        int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        return new int[]{largeIconWidth, largeIconHeight};
+    }
+
+    // Every variant of the current art pack starts with this
+    private String getPackPrefix() {
+        return Integer.toHexString(Utility.getArtPack(mContext).hashCode()) + "_";
+    }
+
+    /**
+     * @return the key of a variant in both the memory and the disk tier, or null if the weather
+     *         condition has no art.
+     */
+    String getKey(int weatherId, int sizeClass) {
+        String artName = Utility.getArtNameForWeatherCondition(weatherId);
+        if (artName == null) {
+            return null;
+        }
+        int[] size = mSizes[sizeClass];
+        return getPackPrefix() + String.format(Locale.US, "%s_%dx%d_%s",
+                SIZE_NAMES[sizeClass], size[0], size[1], artName);
+    }
+
+    private File getDirectory() {
+        return new File(mContext.getCacheDir(), DIRECTORY);
+    }
+
+    private Bitmap readDisk(String key) {
+        File file = new File(getDirectory(), key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                int width = in.readInt();
+                int height = in.readInt();
+                // Checked before allocating, so that a corrupt header can't ask for gigabytes
+                if (width <= 0 || height <= 0
+                        || (long) width * height * 4 != file.length() - 8) {
+                    throw new IOException("Bad dimensions " + width + "x" + height);
+                }
+                byte[] pixels = new byte[width * height * 4];
+                in.readFully(pixels);
+                Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+                return bitmap;
+            } finally {
+                in.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Dropping unreadable art " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Bitmap bitmap) throws IOException {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final ByteBuffer pixels = ByteBuffer.allocate(width * height * 4);
+        bitmap.copyPixelsToBuffer(pixels);
+
+        // Two threads may write the same key only across art pack switches, and then write the
+        // same pixels
+        AtomicFileWriter.write(new File(getDirectory(), key), new AtomicFileWriter.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(width);
+                data.writeInt(height);
+                data.write(pixels.array());
+                data.flush();
+            }
+        });
+    }
+}
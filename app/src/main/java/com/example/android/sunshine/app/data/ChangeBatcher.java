@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the URIs a provider changes inside a batch and sends one change notification per
+ * table once the outermost batch commits.  Batches follow the thread that opened them, the same
+ * way SQLite transactions do, so other threads keep notifying immediately.
+ */
+class ChangeBatcher {
+    private static class Batch {
+        int depth;
+        boolean failed;
+        final Set<Uri> uris = new LinkedHashSet<Uri>();
+    }
+
+    private final ContentResolver mResolver;
+    private final ThreadLocal<Batch> mBatch = new ThreadLocal<Batch>();
+
+    ChangeBatcher(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    void begin() {
+        Batch batch = mBatch.get();
+        if (batch == null) {
+            batch = new Batch();
+            mBatch.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Closes the innermost batch.  Notifications go out when the outermost one closes, unless
+     * any level of the batch failed, in which case nothing was committed and they are dropped.
+     */
+    void end(boolean successful) {
+        Batch batch = mBatch.get();
+        if (batch == null) {
+            throw new IllegalStateException("end() without begin()");
+        }
+        if (!successful) {
+            batch.failed = true;
+        }
+        if (--batch.depth > 0) {
+            return;
+        }
+        mBatch.remove();
+        if (!batch.failed) {
+            for (Set<Uri> tableUris : groupByTable(batch.uris).values()) {
+                mResolver.notifyChange(commonAncestor(tableUris), null);
+            }
+        }
+    }
+
+    /**
+     * Groups URIs by their first path segment, the table they belong to.  Changes to different
+     * tables are announced separately, so that a batch touching two tables doesn't reach the
+     * observers of every other table through the authority's root.  A change to the root itself
+     * already covers everything and is announced alone.
+     */
+    static Map<String, Set<Uri>> groupByTable(Set<Uri> uris) {
+        Map<String, Set<Uri>> byTable = new LinkedHashMap<String, Set<Uri>>();
+        for (Uri uri : uris) {
+            List<String> segments = uri.getPathSegments();
+            if (segments.isEmpty()) {
+                byTable.clear();
+                byTable.put("", uris);
+                break;
+            }
+            Set<Uri> tableUris = byTable.get(segments.get(0));
+            if (tableUris == null) {
+                tableUris = new LinkedHashSet<Uri>();
+                byTable.put(segments.get(0), tableUris);
+            }
+            tableUris.add(uri);
+        }
+        return byTable;
+    }
+
+    /**
+     * Notifies observers of a change to the given URI, or holds the notification back if the
+     * calling thread is inside a batch.
+     */
+    void notifyChange(Uri uri) {
+        Batch batch = mBatch.get();
+        if (batch != null) {
+            batch.uris.add(uri);
+        } else {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * A change notification reaches every observer registered on the notified URI or on any of
+     * its descendants, so notifying the deepest URI that all changes to a table share gives each
+     * affected observer of that table exactly one callback.
+     */
+    static Uri commonAncestor(Set<Uri> uris) {
+        List<String> common = null;
+        for (Uri uri : uris) {
+            List<String> segments = uri.getPathSegments();
+            if (common == null) {
+                common = segments;
+                continue;
+            }
+            int shared = 0;
+            while (shared < common.size() && shared < segments.size()
+                    && common.get(shared).equals(segments.get(shared))) {
+                shared++;
+            }
+            common = common.subList(0, shared);
+        }
+        Uri.Builder builder = WeatherContract.BASE_CONTENT_URI.buildUpon();
+        for (String segment : common) {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+}
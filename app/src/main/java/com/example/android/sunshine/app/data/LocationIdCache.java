@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.support.v4.util.LongSparseArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory, two-way map between location settings and location row ids.  The location table
+ * holds a handful of rows, so the whole table fits easily; it is loaded on first use and kept in
+ * step by the provider on every location write.  When a write can't be tracked precisely (an
+ * update or delete with an arbitrary selection, or a rolled back batch), the cache simply drops
+ * everything and reloads on next use.
+ *
+ * The provider calls into the cache from inside its transactions, so the lock guarding the maps
+ * is never held across a database read: the table is loaded outside it and swapped in, and a
+ * load overtaken by a write or an invalidation is thrown away and done again.
+ */
+class LocationIdCache {
+    static final long UNKNOWN = -1;
+
+    private final SQLiteOpenHelper mOpenHelper;
+    private Map<String, Long> mIdsBySetting = new HashMap<String, Long>();
+    private LongSparseArray<String> mSettingsById = new LongSparseArray<String>();
+    private boolean mWarm = false;
+    // Bumped whenever a load in progress may have missed a change
+    private int mGeneration = 0;
+
+    LocationIdCache(SQLiteOpenHelper openHelper) {
+        mOpenHelper = openHelper;
+    }
+
+    /**
+     * Loads the location table if it isn't loaded yet.  Safe to call from any thread.
+     */
+    void warm() {
+        while (true) {
+            int generation;
+            synchronized (this) {
+                if (mWarm) {
+                    return;
+                }
+                generation = mGeneration;
+            }
+
+            Map<String, Long> idsBySetting = new HashMap<String, Long>();
+            LongSparseArray<String> settingsById = new LongSparseArray<String>();
+            SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+            Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                    new String[]{WeatherContract.LocationEntry._ID,
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                    null, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    idsBySetting.put(cursor.getString(1), cursor.getLong(0));
+                    settingsById.put(cursor.getLong(0), cursor.getString(1));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            synchronized (this) {
+                if (generation == mGeneration) {
+                    mIdsBySetting = idsBySetting;
+                    mSettingsById = settingsById;
+                    mWarm = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the row id of the location, or {@link #UNKNOWN} if there is no such location.
+     */
+    long getId(String locationSetting) {
+        warm();
+        synchronized (this) {
+            Long id = mIdsBySetting.get(locationSetting);
+            return id != null ? id : UNKNOWN;
+        }
+    }
+
+    /**
+     * @return the location setting of a row id, or null if there is no such location.
+     */
+    String getSetting(long id) {
+        warm();
+        synchronized (this) {
+            return mSettingsById.get(id);
+        }
+    }
+
+    /**
+     * Records a location row that was just inserted.
+     */
+    synchronized void put(long id, String locationSetting) {
+        if (!mWarm) {
+            // A load in progress may have read the table before this row
+            mGeneration++;
+        } else if (locationSetting != null) {
+            mIdsBySetting.put(locationSetting, id);
+            mSettingsById.put(id, locationSetting);
+        }
+    }
+
+    /**
+     * Forgets everything; the next lookup reloads the table.
+     */
+    synchronized void invalidate() {
+        mIdsBySetting = new HashMap<String, Long>();
+        mSettingsById = new LongSparseArray<String>();
+        mWarm = false;
+        mGeneration++;
+    }
+}
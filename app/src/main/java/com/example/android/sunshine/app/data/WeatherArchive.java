@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Append-only store of past forecasts, one file per location, kept outside SQLite so that years
+ * of history cost nothing to the queries on the weather table.
+ *
+ * A file is a run of fixed-size blocks of {@link #BLOCK_ROWS} days.  Each block holds its row
+ * count followed by one array per column: the dates as longs, then the weather id and the
+ * measurements as ints, scaled like fixed point weather storage.  Days are appended in date
+ * order and only ever after the last one archived, so every block but the last is full and a
+ * date range maps to a contiguous run of rows.  Queries map the file read-only and hand out a
+ * cursor that reads values straight from the mapping.
+ */
+class WeatherArchive {
+    // Under the app's files directory
+    static final String DIRECTORY = "archive";
+
+    static final int BLOCK_ROWS = 512;
+
+    // Row count, padded so the date column stays 8-byte aligned
+    private static final int HEADER_BYTES = 8;
+    private static final int DATE_BYTES = 8;
+    private static final int INT_BYTES = 4;
+
+    // The int columns, in file order
+    private static final String[] INT_COLUMNS = {
+            ArchiveEntry.COLUMN_WEATHER_ID,
+            ArchiveEntry.COLUMN_MIN_TEMP,
+            ArchiveEntry.COLUMN_MAX_TEMP,
+            ArchiveEntry.COLUMN_HUMIDITY,
+            ArchiveEntry.COLUMN_PRESSURE,
+            ArchiveEntry.COLUMN_WIND_SPEED,
+            ArchiveEntry.COLUMN_DEGREES
+    };
+
+    private static final int INT_COLUMNS_OFFSET = HEADER_BYTES + BLOCK_ROWS * DATE_BYTES;
+    static final int BLOCK_BYTES = INT_COLUMNS_OFFSET + BLOCK_ROWS * INT_BYTES * INT_COLUMNS.length;
+
+    private static final String SUFFIX = ".archive";
+
+    private final File mDirectory;
+
+    WeatherArchive(File directory) {
+        mDirectory = directory;
+    }
+
+    private File getFile(String locationSetting) {
+        return new File(mDirectory, Uri.encode(locationSetting) + SUFFIX);
+    }
+
+    /**
+     * Appends days to a location's archive.  Days on or before the last archived date are
+     * skipped, so archiving the same rows twice is harmless.
+     *
+     * @param days Weather values with plain (not fixed point) measurements, in date order.
+     * @return the number of days appended.
+     */
+    synchronized int append(String locationSetting, List<ContentValues> days) throws IOException {
+        if (days.isEmpty()) {
+            return 0;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + mDirectory);
+        }
+
+        RandomAccessFile file = new RandomAccessFile(getFile(locationSetting), "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            long blocks = file.length() / BLOCK_BYTES;
+            int count = blocks == 0 ? BLOCK_ROWS : readCount(channel, blocks - 1);
+            // A block is allocated before its count is written, so a crash in between leaves an
+            // empty block at the end.  It is dropped, which makes the last block non-empty.
+            while (blocks > 0 && count == 0) {
+                blocks--;
+                file.setLength(blocks * BLOCK_BYTES);
+                count = blocks == 0 ? BLOCK_ROWS : readCount(channel, blocks - 1);
+            }
+            long lastDate = blocks == 0 ? Long.MIN_VALUE
+                    : readDate(channel, blocks - 1, count - 1);
+
+            int appended = 0;
+            int i = 0;
+            while (i < days.size()) {
+                // Gather as many new days as fit in the current block, or in a fresh one
+                int batch = 0;
+                ContentValues[] run = new ContentValues[
+                        count == BLOCK_ROWS ? BLOCK_ROWS : BLOCK_ROWS - count];
+                while (i < days.size() && batch < run.length) {
+                    ContentValues day = days.get(i++);
+                    long date = day.getAsLong(ArchiveEntry.COLUMN_DATE);
+                    if (date > lastDate) {
+                        run[batch++] = day;
+                        lastDate = date;
+                    }
+                }
+                if (batch == 0) {
+                    break;
+                }
+                if (count == BLOCK_ROWS) {
+                    blocks++;
+                    file.setLength(blocks * BLOCK_BYTES);
+                    count = 0;
+                }
+                writeRun(channel, blocks - 1, count, run, batch);
+                count += batch;
+                appended += batch;
+                // The count goes last, so a reader never sees a slot before it is filled
+                ByteBuffer header = ByteBuffer.allocate(INT_BYTES);
+                header.putInt(0, count);
+                channel.write(header, (blocks - 1) * BLOCK_BYTES);
+            }
+            return appended;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static int readCount(FileChannel channel, long block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INT_BYTES);
+        channel.read(buffer, block * BLOCK_BYTES);
+        return buffer.getInt(0);
+    }
+
+    private static long readDate(FileChannel channel, long block, int slot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(DATE_BYTES);
+        channel.read(buffer, block * BLOCK_BYTES + HEADER_BYTES + slot * DATE_BYTES);
+        return buffer.getLong(0);
+    }
+
+    private static void writeRun(FileChannel channel, long block, int firstSlot,
+                                 ContentValues[] run, int length) throws IOException {
+        long blockStart = block * BLOCK_BYTES;
+
+        ByteBuffer dates = ByteBuffer.allocate(length * DATE_BYTES);
+        for (int i = 0; i < length; i++) {
+            dates.putLong(run[i].getAsLong(ArchiveEntry.COLUMN_DATE));
+        }
+        dates.flip();
+        channel.write(dates, blockStart + HEADER_BYTES + firstSlot * DATE_BYTES);
+
+        ByteBuffer values = ByteBuffer.allocate(length * INT_BYTES);
+        for (int column = 0; column < INT_COLUMNS.length; column++) {
+            values.clear();
+            String name = INT_COLUMNS[column];
+            int scale = WeatherEntry.getScale(name);
+            for (int i = 0; i < length; i++) {
+                values.putInt(scale == 0 ? run[i].getAsInteger(name)
+                        : WeatherContract.toFixedPoint(run[i].getAsDouble(name), scale));
+            }
+            values.flip();
+            channel.write(values, blockStart + intColumnOffset(column, firstSlot));
+        }
+    }
+
+    private static long intColumnOffset(int column, int slot) {
+        return INT_COLUMNS_OFFSET + (long) column * BLOCK_ROWS * INT_BYTES + slot * INT_BYTES;
+    }
+
+    /**
+     * @return the archived days of a location from startDate up to, but not including, endDate,
+     *         in date order.  The cursor reads from a read-only mapping of the file, so it copies
+     *         nothing however many years it spans.
+     */
+    Cursor query(String locationSetting, String[] projection, long startDate, long endDate)
+            throws IOException {
+        if (projection == null) {
+            projection = ArchiveEntry.COLUMNS;
+        }
+        File archive = getFile(locationSetting);
+        if (!archive.exists() || archive.length() < BLOCK_BYTES) {
+            return new MatrixCursor(projection, 0);
+        }
+
+        MappedByteBuffer buffer;
+        RandomAccessFile file = new RandomAccessFile(archive, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+
+        int blocks = buffer.capacity() / BLOCK_BYTES;
+        int rows = (blocks - 1) * BLOCK_ROWS + buffer.getInt((blocks - 1) * BLOCK_BYTES);
+        int first = lowerBound(buffer, rows, startDate);
+        int last = lowerBound(buffer, rows, endDate);
+        return new ArchiveCursor(buffer, projection, first, Math.max(first, last));
+    }
+
+    // Index of the first row dated on or after date
+    private static int lowerBound(ByteBuffer buffer, int rows, long date) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getDate(buffer, mid) < date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int rowOffset(int row) {
+        return (row / BLOCK_ROWS) * BLOCK_BYTES;
+    }
+
+    static long getDate(ByteBuffer buffer, int row) {
+        return buffer.getLong(rowOffset(row) + HEADER_BYTES + (row % BLOCK_ROWS) * DATE_BYTES);
+    }
+
+    static int getInt(ByteBuffer buffer, int row, int column) {
+        return buffer.getInt(rowOffset(row) + (int) intColumnOffset(column, row % BLOCK_ROWS));
+    }
+
+    /**
+     * A read-only view of rows [first, last) of a mapped archive.  Nothing is read until a
+     * value is asked for.
+     */
+    private static class ArchiveCursor extends AbstractCursor {
+        // What each projected column reads: ID_COLUMN, DATE_COLUMN or an index into INT_COLUMNS
+        private static final int ID_COLUMN = -2;
+        private static final int DATE_COLUMN = -1;
+
+        private final ByteBuffer mBuffer;
+        private final String[] mColumnNames;
+        private final int[] mSources;
+        private final int[] mScales;
+        private final int mFirst;
+        private final int mCount;
+
+        ArchiveCursor(ByteBuffer buffer, String[] projection, int first, int last) {
+            mBuffer = buffer;
+            mColumnNames = projection;
+            mSources = new int[projection.length];
+            mScales = new int[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                mSources[i] = getSource(projection[i]);
+                mScales[i] = mSources[i] >= 0 ? WeatherEntry.getScale(projection[i]) : 0;
+            }
+            mFirst = first;
+            mCount = last - first;
+        }
+
+        private static int getSource(String column) {
+            if (ArchiveEntry._ID.equals(column)) {
+                return ID_COLUMN;
+            }
+            if (ArchiveEntry.COLUMN_DATE.equals(column)) {
+                return DATE_COLUMN;
+            }
+            for (int i = 0; i < INT_COLUMNS.length; i++) {
+                if (INT_COLUMNS[i].equals(column)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unknown archive column: " + column);
+        }
+
+        private int getRow() {
+            return mFirst + getPosition();
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        @Override
+        public long getLong(int column) {
+            switch (mSources[column]) {
+                case ID_COLUMN:
+                    return getRow();
+                case DATE_COLUMN:
+                    return getDate(mBuffer, getRow());
+                default:
+                    return (long) getDouble(column);
+            }
+        }
+
+        @Override
+        public double getDouble(int column) {
+            int source = mSources[column];
+            if (source < 0) {
+                return getLong(column);
+            }
+            int value = getInt(mBuffer, getRow(), source);
+            return mScales[column] == 0 ? value
+                    : WeatherContract.fromFixedPoint(value, mScales[column]);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public String getString(int column) {
+            return mSources[column] < 0 || mScales[column] == 0
+                    ? Long.toString(getLong(column)) : Double.toString(getDouble(column));
+        }
+
+        @Override
+        public int getType(int column) {
+            return mSources[column] < 0 || mScales[column] == 0
+                    ? Cursor.FIELD_TYPE_INTEGER : Cursor.FIELD_TYPE_FLOAT;
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return false;
+        }
+    }
+}
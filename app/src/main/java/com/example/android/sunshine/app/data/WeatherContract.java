@@ -17,10 +17,13 @@ package com.example.android.sunshine.app.data;
 
 import android.content.ContentResolver;
 import android.content.ContentUris;
+import android.content.ContentValues;
 import android.net.Uri;
 import android.provider.BaseColumns;
 import android.text.format.Time;
 
+import java.util.Calendar;
+
 /**
  * Defines table and column names for the weather database.
  */
@@ -42,7 +45,19 @@ public class WeatherContract {
     // as the ContentProvider hasn't been given any information on what to do with "givemeroot".
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
+    public static final String PATH_WEATHER_BY_LOCATION_ID = "weather_by_location_id";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_HOURLY = "hourly";
+    public static final String PATH_SYNC_METRICS = "sync_metrics";
+    public static final String PATH_SYNC_SCHEDULE = "sync_schedule";
+    public static final String PATH_ARCHIVE = "archive";
+    public static final String PATH_STATS = "stats";
+
+    // Segments that follow a location in weather URIs, for date windows and keyset pages
+    public static final String PATH_RANGE = "range";
+    public static final String PATH_PAGE = "page";
+    // Segment that marks a location URI as looked up by setting rather than by row id
+    public static final String PATH_SETTING = "setting";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
@@ -54,6 +69,16 @@ public class WeatherContract {
         return time.setJulianDay(julianDay);
     }
 
+    // Measurements kept as scaled integers are multiplied by their scale and rounded on the way
+    // in, and divided by it on the way out.
+    public static int toFixedPoint(double value, int scale) {
+        return (int) Math.round(value * scale);
+    }
+
+    public static double fromFixedPoint(long value, int scale) {
+        return (double) value / scale;
+    }
+
     /* Inner class that defines the table contents of the location table */
     public static final class LocationEntry implements BaseColumns {
 
@@ -81,9 +106,22 @@ public class WeatherContract {
         public static final String COLUMN_COORD_LAT = "coord_lat";
         public static final String COLUMN_COORD_LONG = "coord_long";
 
+        public static final String[] COLUMNS = {
+                _ID, COLUMN_LOCATION_SETTING, COLUMN_CITY_NAME, COLUMN_COORD_LAT, COLUMN_COORD_LONG
+        };
+
         public static Uri buildLocationUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+        public static Uri buildLocationSettingUri(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(PATH_SETTING)
+                    .appendPath(locationSetting).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
     }
 
     /* Inner class that defines the table contents of the weather table */
@@ -99,6 +137,12 @@ public class WeatherContract {
 
         public static final String TABLE_NAME = "weather";
 
+        // Index on (location_id, date)
+        static final String INDEX_LOCATION_DATE = "weather_location_date";
+
+        // Larger page sizes are cut down to this, so a page always fits a small cursor window
+        public static final int MAX_PAGE_SIZE = 100;
+
         // Column with the foreign key into the location table.
         public static final String COLUMN_LOC_KEY = "location_id";
         // Date, stored as long in milliseconds since the epoch
@@ -126,6 +170,91 @@ public class WeatherContract {
         // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
         public static final String COLUMN_DEGREES = "degrees";
 
+        public static final String[] COLUMNS = {
+                _ID, COLUMN_LOC_KEY, COLUMN_DATE, COLUMN_WEATHER_ID, COLUMN_SHORT_DESC,
+                COLUMN_MIN_TEMP, COLUMN_MAX_TEMP, COLUMN_HUMIDITY, COLUMN_PRESSURE,
+                COLUMN_WIND_SPEED, COLUMN_DEGREES
+        };
+
+        // Scales of the measurements when the database is built with fixed point storage, in
+        // which case the provider converts on the way in and out and callers always see the
+        // plain values.
+        public static final int TEMP_SCALE = 100;
+        public static final int HUMIDITY_SCALE = 10;
+        public static final int PRESSURE_SCALE = 10;
+        public static final int WIND_SCALE = 100;
+        public static final int DEGREES_SCALE = 10;
+
+        /**
+         * @return the fixed point scale of a column, or 0 if it isn't a measurement.
+         */
+        public static int getScale(String column) {
+            switch (column) {
+                case COLUMN_MIN_TEMP:
+                case COLUMN_MAX_TEMP:
+                    return TEMP_SCALE;
+                case COLUMN_HUMIDITY:
+                    return HUMIDITY_SCALE;
+                case COLUMN_PRESSURE:
+                    return PRESSURE_SCALE;
+                case COLUMN_WIND_SPEED:
+                    return WIND_SCALE;
+                case COLUMN_DEGREES:
+                    return DEGREES_SCALE;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * @return a copy of the values with every measurement scaled to its fixed point integer.
+         */
+        public static ContentValues encodeFixedPoint(ContentValues values) {
+            ContentValues encoded = new ContentValues(values);
+            for (String column : values.keySet()) {
+                int scale = getScale(column);
+                Double value = values.getAsDouble(column);
+                if (scale != 0 && value != null) {
+                    encoded.put(column, toFixedPoint(value, scale));
+                }
+            }
+            return encoded;
+        }
+
+        /**
+         * Rewrites a projection so that each fixed point measurement is read back as its plain
+         * value, e.g. "weather.min" becomes "weather.min / 100.0 AS min".  The result column names
+         * are unchanged, so cursors read exactly as they would from REAL columns.
+         */
+        public static String[] decodeFixedPoint(String[] projection) {
+            String[] decoded = new String[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                String column = projection[i];
+                String name = column.substring(column.lastIndexOf('.') + 1);
+                int scale = getScale(name);
+                decoded[i] = scale == 0 ? column
+                        : column + " / " + scale + ".0 AS " + name;
+            }
+            return decoded;
+        }
+
+        // Query parameter of a delete on CONTENT_URI asking for the deleted days to be kept in
+        // the location's archive first.  See ArchiveEntry.
+        public static final String PARAM_ARCHIVE = "archive";
+
+        public static Uri buildArchivingUri() {
+            return CONTENT_URI.buildUpon().appendQueryParameter(PARAM_ARCHIVE, "1").build();
+        }
+
+        public static boolean isArchivingUri(Uri uri) {
+            return "1".equals(uri.getQueryParameter(PARAM_ARCHIVE));
+        }
+
+        // Weather keyed by location row id rather than location setting.  These are answered
+        // from the weather table alone, so their projections may only name weather columns.
+        public static final Uri CONTENT_BY_LOCATION_ID_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_WEATHER_BY_LOCATION_ID).build();
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
@@ -149,14 +278,100 @@ public class WeatherContract {
                     .appendPath(Long.toString(normalizeDate(date))).build();
         }
 
+        public static Uri buildWeatherLocationId(long locationId) {
+            return ContentUris.withAppendedId(CONTENT_BY_LOCATION_ID_URI, locationId);
+        }
+
+        public static Uri buildWeatherLocationIdWithStartDate(long locationId, long startDate) {
+            return buildWeatherLocationId(locationId).buildUpon()
+                    .appendQueryParameter(COLUMN_DATE, Long.toString(normalizeDate(startDate)))
+                    .build();
+        }
+
+        public static Uri buildWeatherLocationIdWithDate(long locationId, long date) {
+            return buildWeatherLocationId(locationId).buildUpon()
+                    .appendPath(Long.toString(normalizeDate(date))).build();
+        }
+
+        /**
+         * Days from startDate up to, but not including, endDate.
+         */
+        public static Uri buildWeatherLocationIdWithDateRange(
+                long locationId, long startDate, long endDate) {
+            return appendDateRange(buildWeatherLocationId(locationId), startDate, endDate);
+        }
+
+        /**
+         * Days from startDate up to, but not including, endDate.
+         */
+        public static Uri buildWeatherLocationWithDateRange(
+                String locationSetting, long startDate, long endDate) {
+            return appendDateRange(buildWeatherLocation(locationSetting), startDate, endDate);
+        }
+
+        /**
+         * Up to pageSize days after afterDate, in date order.  To fetch the next page pass the
+         * date of the last row of this one.
+         */
+        public static Uri buildWeatherLocationPage(
+                String locationSetting, long afterDate, int pageSize) {
+            return appendPage(buildWeatherLocation(locationSetting), afterDate, pageSize);
+        }
+
+        /**
+         * The first page of up to pageSize days, starting with the day of startDate.
+         */
+        public static Uri buildWeatherLocationFirstPage(
+                String locationSetting, long startDate, int pageSize) {
+            return buildWeatherLocationPage(locationSetting, normalizeDate(startDate) - 1,
+                    pageSize);
+        }
+
+        public static Uri buildWeatherLocationIdPage(long locationId, long afterDate, int pageSize) {
+            return appendPage(buildWeatherLocationId(locationId), afterDate, pageSize);
+        }
+
+        private static Uri appendDateRange(Uri locationUri, long startDate, long endDate) {
+            return locationUri.buildUpon().appendPath(PATH_RANGE)
+                    .appendPath(Long.toString(normalizeDate(startDate)))
+                    .appendPath(Long.toString(normalizeDate(endDate))).build();
+        }
+
+        private static Uri appendPage(Uri locationUri, long afterDate, int pageSize) {
+            // afterDate is usually the date of a row, which is already normalized
+            return locationUri.buildUpon().appendPath(PATH_PAGE)
+                    .appendPath(Long.toString(afterDate))
+                    .appendPath(Integer.toString(pageSize)).build();
+        }
+
         public static String getLocationSettingFromUri(Uri uri) {
             return uri.getPathSegments().get(1);
         }
 
+        public static long getLocationIdFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(1));
+        }
+
         public static long getDateFromUri(Uri uri) {
             return Long.parseLong(uri.getPathSegments().get(2));
         }
 
+        public static long getRangeStartFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(3));
+        }
+
+        public static long getRangeEndFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(4));
+        }
+
+        public static long getPageAfterDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(3));
+        }
+
+        public static int getPageSizeFromUri(Uri uri) {
+            return Integer.parseInt(uri.getPathSegments().get(4));
+        }
+
         public static long getStartDateFromUri(Uri uri) {
             String dateString = uri.getQueryParameter(COLUMN_DATE);
             if (null != dateString && dateString.length() > 0)
@@ -165,4 +380,368 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the hourly table, OWM's forecast in 3-hour
+       steps.  There are about 40 rows per location for every row of the weather table, so the
+       layout is kept compact: times in seconds and measurements as scaled integers. */
+    public static final class HourlyEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_HOURLY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HOURLY;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HOURLY;
+
+        public static final String TABLE_NAME = "hourly";
+
+        // Column with the foreign key into the location table.
+        public static final String COLUMN_LOC_KEY = "location_id";
+        // Start of the step, in seconds since the epoch (UTC), as sent by OWM
+        public static final String COLUMN_TIME = "time";
+        // Weather id as returned by API, to identify the icon to be used
+        public static final String COLUMN_WEATHER_ID = "weather_id";
+
+        // Temperature in hundredths of a degree Celsius
+        public static final String COLUMN_TEMP = "temp";
+        // Relative humidity in percent
+        public static final String COLUMN_HUMIDITY = "humidity";
+        // Pressure in tenths of a hPa
+        public static final String COLUMN_PRESSURE = "pressure";
+        // Wind speed in hundredths of a metre per second
+        public static final String COLUMN_WIND_SPEED = "wind";
+        // Meteorological degrees (e.g, 0 is north, 180 is south), whole
+        public static final String COLUMN_DEGREES = "degrees";
+
+        public static final int TEMP_SCALE = 100;
+        public static final int PRESSURE_SCALE = 10;
+        public static final int WIND_SCALE = 100;
+
+        public static Uri buildHourlyUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        public static Uri buildHourlyLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        /**
+         * Steps from startTime up to, but not including, endTime, both in seconds.
+         */
+        public static Uri buildHourlyLocationWithTimeRange(
+                String locationSetting, long startTime, long endTime) {
+            return buildHourlyLocation(locationSetting).buildUpon().appendPath(PATH_RANGE)
+                    .appendPath(Long.toString(startTime))
+                    .appendPath(Long.toString(endTime)).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getRangeStartFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(3));
+        }
+
+        public static long getRangeEndFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(4));
+        }
+    }
+
+    /* Inner class that defines the columns of the read-only weather archive: the days deleted
+       from the weather table through WeatherEntry.buildArchivingUri(), kept in a columnar file per
+       location rather than in the database.  Rows come back in date order and _ID is the row's
+       position in its location's archive. */
+    public static final class ArchiveEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_ARCHIVE).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ARCHIVE;
+
+        // Same names and meanings as in WeatherEntry
+        public static final String COLUMN_DATE = WeatherEntry.COLUMN_DATE;
+        public static final String COLUMN_WEATHER_ID = WeatherEntry.COLUMN_WEATHER_ID;
+        public static final String COLUMN_MIN_TEMP = WeatherEntry.COLUMN_MIN_TEMP;
+        public static final String COLUMN_MAX_TEMP = WeatherEntry.COLUMN_MAX_TEMP;
+        public static final String COLUMN_HUMIDITY = WeatherEntry.COLUMN_HUMIDITY;
+        public static final String COLUMN_PRESSURE = WeatherEntry.COLUMN_PRESSURE;
+        public static final String COLUMN_WIND_SPEED = WeatherEntry.COLUMN_WIND_SPEED;
+        public static final String COLUMN_DEGREES = WeatherEntry.COLUMN_DEGREES;
+
+        public static final String[] COLUMNS = {
+                _ID, COLUMN_DATE, COLUMN_WEATHER_ID, COLUMN_MIN_TEMP, COLUMN_MAX_TEMP,
+                COLUMN_HUMIDITY, COLUMN_PRESSURE, COLUMN_WIND_SPEED, COLUMN_DEGREES
+        };
+
+        public static Uri buildArchiveLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        /**
+         * Archived days from startDate up to, but not including, endDate.
+         */
+        public static Uri buildArchiveLocationWithDateRange(
+                String locationSetting, long startDate, long endDate) {
+            return buildArchiveLocation(locationSetting).buildUpon().appendPath(PATH_RANGE)
+                    .appendPath(Long.toString(normalizeDate(startDate)))
+                    .appendPath(Long.toString(normalizeDate(endDate))).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getRangeStartFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(3));
+        }
+
+        public static long getRangeEndFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(4));
+        }
+    }
+
+    /* Inner class that defines the table contents of the stats table: running aggregates of the
+       forecast per location over days, weeks and months.  The provider keeps them up to date as
+       weather rows are written, so a bucket is read as one row whatever its length.  A day counts
+       once however many times its forecast is rewritten, with its latest values, and stays
+       counted after the weather row itself is deleted. */
+    public static final class StatsEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_STATS).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        public static final String TABLE_NAME = "stats";
+
+        // Bucket lengths.  Weeks start on Monday; all buckets start at midnight, local time, like
+        // the dates of the weather table.
+        public static final String PERIOD_DAY = "day";
+        public static final String PERIOD_WEEK = "week";
+        public static final String PERIOD_MONTH = "month";
+
+        // Column with the foreign key into the location table.
+        public static final String COLUMN_LOC_KEY = "location_id";
+        // One of the PERIOD_ constants
+        public static final String COLUMN_PERIOD = "period";
+        // Start of the bucket, stored as long in milliseconds since the epoch
+        public static final String COLUMN_BUCKET = "bucket";
+
+        // Number of days in the bucket so far
+        public static final String COLUMN_DAYS = "days";
+        // Lowest min and highest max temperature of the bucket
+        public static final String COLUMN_LOW = "low";
+        public static final String COLUMN_HIGH = "high";
+        // Sums of the min and max temperatures, for averages: sum_max / days is the average high
+        public static final String COLUMN_SUM_MIN = "sum_min";
+        public static final String COLUMN_SUM_MAX = "sum_max";
+        // The four temperature columns are stored as integers scaled by TEMP_SCALE, so that sums
+        // adjusted on every write stay exact; the provider reads them back as plain values.
+        public static final int TEMP_SCALE = WeatherEntry.TEMP_SCALE;
+        // Number of days with rain, drizzle or thunderstorms, see isWet(int)
+        public static final String COLUMN_WET_DAYS = "wet_days";
+
+        public static final String[] COLUMNS = {
+                _ID, COLUMN_LOC_KEY, COLUMN_PERIOD, COLUMN_BUCKET, COLUMN_DAYS, COLUMN_LOW,
+                COLUMN_HIGH, COLUMN_SUM_MIN, COLUMN_SUM_MAX, COLUMN_WET_DAYS
+        };
+
+        /**
+         * @return whether period is one of the PERIOD_ constants.
+         */
+        public static boolean isPeriod(String period) {
+            return PERIOD_DAY.equals(period) || PERIOD_WEEK.equals(period)
+                    || PERIOD_MONTH.equals(period);
+        }
+
+        /**
+         * Rewrites a projection so that the temperature columns are read back as plain values,
+         * like {@link WeatherEntry#decodeFixedPoint(String[])}.
+         */
+        public static String[] decodeFixedPoint(String[] projection) {
+            String[] decoded = new String[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                String column = projection[i];
+                switch (column) {
+                    case COLUMN_LOW:
+                    case COLUMN_HIGH:
+                    case COLUMN_SUM_MIN:
+                    case COLUMN_SUM_MAX:
+                        decoded[i] = column + " / " + TEMP_SCALE + ".0 AS " + column;
+                        break;
+                    default:
+                        decoded[i] = column;
+                }
+            }
+            return decoded;
+        }
+
+        /**
+         * @return whether a weather id is in the thunderstorm, drizzle or rain groups.
+         */
+        public static boolean isWet(int weatherId) {
+            return weatherId >= 200 && weatherId < 600;
+        }
+
+        /**
+         * @return the start of the bucket of the given period that holds date.
+         */
+        public static long getBucketStart(String period, long date) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(normalizeDate(date));
+            switch (period) {
+                case PERIOD_DAY:
+                    break;
+                case PERIOD_WEEK:
+                    int daysSinceMonday =
+                            (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+                    calendar.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+                    break;
+                case PERIOD_MONTH:
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown period: " + period);
+            }
+            return calendar.getTimeInMillis();
+        }
+
+        /**
+         * @return the start of the bucket that follows the one starting at bucketStart.
+         */
+        public static long getNextBucketStart(String period, long bucketStart) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(bucketStart);
+            switch (period) {
+                case PERIOD_DAY:
+                    calendar.add(Calendar.DAY_OF_MONTH, 1);
+                    break;
+                case PERIOD_WEEK:
+                    calendar.add(Calendar.DAY_OF_MONTH, 7);
+                    break;
+                case PERIOD_MONTH:
+                    calendar.add(Calendar.MONTH, 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown period: " + period);
+            }
+            return calendar.getTimeInMillis();
+        }
+
+        /**
+         * All the buckets of a period for a location, in date order.
+         */
+        public static Uri buildStatsLocation(String locationSetting, String period) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).appendPath(period).build();
+        }
+
+        /**
+         * The single bucket of a period that holds date.
+         */
+        public static Uri buildStatsLocationWithDate(
+                String locationSetting, String period, long date) {
+            return buildStatsLocation(locationSetting, period).buildUpon()
+                    .appendPath(Long.toString(normalizeDate(date))).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static String getPeriodFromUri(Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
+
+        public static long getDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(3));
+        }
+    }
+
+    /* Inner class that defines the columns of the read-only sync metrics view.  These rows are
+       kept in memory by the sync adapter and are not backed by a database table. */
+    public static final class SyncMetricsEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_METRICS).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_METRICS;
+
+        // Wall clock time the sync started, in milliseconds since the epoch
+        public static final String COLUMN_START_TIME = "start_time";
+        // The location setting the sync was run for
+        public static final String COLUMN_LOCATION = "location";
+
+        // Per-phase durations in milliseconds, -1 when the phase did not run
+        public static final String COLUMN_DNS = "dns_ms";
+        public static final String COLUMN_CONNECT = "connect_ms";
+        public static final String COLUMN_TTFB = "ttfb_ms";
+        public static final String COLUMN_DOWNLOAD = "download_ms";
+        // Time to complete the whole HTTP exchange, DNS through last byte
+        public static final String COLUMN_FETCH = "fetch_ms";
+        public static final String COLUMN_PARSE = "parse_ms";
+        public static final String COLUMN_DB = "db_ms";
+        public static final String COLUMN_WIDGETS = "widgets_ms";
+        public static final String COLUMN_MUZEI = "muzei_ms";
+        public static final String COLUMN_NOTIFICATION = "notification_ms";
+        // Time to fetch, parse and store the 3-hour step forecast
+        public static final String COLUMN_HOURLY = "hourly_ms";
+        public static final String COLUMN_TOTAL = "total_ms";
+
+        // Bytes read from the network for the forecast, and their size once decompressed
+        public static final String COLUMN_BYTES = "bytes";
+        public static final String COLUMN_BYTES_DECODED = "bytes_decoded";
+
+        // The SunshineSyncAdapter.LocationStatus the sync ended with
+        public static final String COLUMN_STATUS = "status";
+
+        public static final String[] COLUMNS = {
+                COLUMN_START_TIME, COLUMN_LOCATION, COLUMN_DNS, COLUMN_CONNECT, COLUMN_TTFB,
+                COLUMN_DOWNLOAD, COLUMN_FETCH, COLUMN_BYTES, COLUMN_BYTES_DECODED, COLUMN_PARSE,
+                COLUMN_DB, COLUMN_WIDGETS, COLUMN_MUZEI, COLUMN_NOTIFICATION, COLUMN_HOURLY,
+                COLUMN_TOTAL, COLUMN_STATUS
+        };
+    }
+
+    /* Inner class that defines the columns of the read-only log of sync scheduling decisions.
+       Like the sync metrics, these rows live in memory only. */
+    public static final class SyncScheduleEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_SCHEDULE).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_SCHEDULE;
+
+        // When the decision was taken, in milliseconds since the epoch
+        public static final String COLUMN_TIME = "time";
+
+        // The periodic sync interval and flex time chosen, in seconds
+        public static final String COLUMN_INTERVAL = "interval";
+        public static final String COLUMN_FLEX = "flex";
+
+        // Inputs: syncs in a row with an unchanged forecast, share of days that changed since
+        // the previous sync, and the severe weather, metered network and low battery flags
+        // (stored as 0 or 1)
+        public static final String COLUMN_UNCHANGED_STREAK = "unchanged_streak";
+        public static final String COLUMN_CHANGED_FRACTION = "changed_fraction";
+        public static final String COLUMN_SEVERE = "severe";
+        public static final String COLUMN_METERED = "metered";
+        public static final String COLUMN_LOW_BATTERY = "low_battery";
+
+        // Human readable summary of why this interval was picked
+        public static final String COLUMN_REASON = "reason";
+
+        public static final String[] COLUMNS = {
+                COLUMN_TIME, COLUMN_INTERVAL, COLUMN_FLEX, COLUMN_UNCHANGED_STREAK,
+                COLUMN_CHANGED_FRACTION, COLUMN_SEVERE, COLUMN_METERED, COLUMN_LOW_BATTERY,
+                COLUMN_REASON
+        };
+    }
 }
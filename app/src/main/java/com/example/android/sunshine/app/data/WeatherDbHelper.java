@@ -19,7 +19,11 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.app.BuildConfig;
+
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.StatsEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
@@ -28,12 +32,31 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 6;
+
+    // The two storage layouts live in different files, so flipping the build flag never has one
+    // read the other's data.
+    static final String DATABASE_NAME =
+            BuildConfig.FIXED_POINT_WEATHER ? "weather_fixed.db" : "weather.db";
 
-    static final String DATABASE_NAME = "weather.db";
+    private final boolean mFixedPoint;
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, BuildConfig.FIXED_POINT_WEATHER);
+    }
+
+    /**
+     * @param fixedPoint Whether the weather table stores its measurements as integers scaled by
+     *                   the WeatherEntry scales.  They take one to three bytes on disk instead of
+     *                   the eight of a REAL with a fractional part.
+     */
+    WeatherDbHelper(Context context, String name, boolean fixedPoint) {
+        super(context, name, null, DATABASE_VERSION);
+        mFixedPoint = fixedPoint;
+    }
+
+    boolean isFixedPoint() {
+        return mFixedPoint;
     }
 
     @Override
@@ -48,6 +71,8 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 LocationEntry.COLUMN_COORD_LONG + " REAL NOT NULL " +
                 " );";
 
+        final String measurementType = mFixedPoint ? " INTEGER NOT NULL, " : " REAL NOT NULL, ";
+
         final String SQL_CREATE_WEATHER_TABLE = "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
                 // Why AutoIncrement here, and not above?
                 // Unique keys will be auto-generated in either case.  But for weather
@@ -62,13 +87,13 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 WeatherEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
                 WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL," +
 
-                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_MIN_TEMP + measurementType +
+                WeatherEntry.COLUMN_MAX_TEMP + measurementType +
 
-                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + measurementType +
+                WeatherEntry.COLUMN_PRESSURE + measurementType +
+                WeatherEntry.COLUMN_WIND_SPEED + measurementType +
+                WeatherEntry.COLUMN_DEGREES + measurementType +
 
                 // Set up the location column as a foreign key to location table.
                 " FOREIGN KEY (" + WeatherEntry.COLUMN_LOC_KEY + ") REFERENCES " +
@@ -79,8 +104,61 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
                 WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
 
+        // The UNIQUE constraint above indexes (date, location_id), which can't serve a lookup by
+        // location alone.  This one lets every per-location query, with or without a date
+        // bound, be answered by an index range scan of the weather table.
+        final String SQL_CREATE_WEATHER_LOCATION_INDEX = "CREATE INDEX " +
+                WeatherEntry.INDEX_LOCATION_DATE + " ON " + WeatherEntry.TABLE_NAME + " (" +
+                WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE + ");";
+
+        // Every measurement is an INTEGER so that it takes one to four bytes on disk rather than
+        // the eight of a REAL.  The UNIQUE constraint leads with location_id, so its index also
+        // serves every per-location time range query.
+        final String SQL_CREATE_HOURLY_TABLE = "CREATE TABLE " + HourlyEntry.TABLE_NAME + " (" +
+                HourlyEntry._ID + " INTEGER PRIMARY KEY," +
+                HourlyEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_TIME + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_TEMP + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_HUMIDITY + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_PRESSURE + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_WIND_SPEED + " INTEGER NOT NULL, " +
+                HourlyEntry.COLUMN_DEGREES + " INTEGER NOT NULL, " +
+
+                " FOREIGN KEY (" + HourlyEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+
+                // One step per time per location; a newer forecast replaces the old one
+                " UNIQUE (" + HourlyEntry.COLUMN_LOC_KEY + ", " +
+                HourlyEntry.COLUMN_TIME + ") ON CONFLICT REPLACE);";
+
+        // Temperatures and their sums are INTEGERs scaled by StatsEntry.TEMP_SCALE, so that a
+        // day's values can be added to and taken back out of a sum exactly.  SQLite integers
+        // are 64 bits wide, far more than a month of scaled sums needs.  Every read and write
+        // goes through the UNIQUE index.
+        final String SQL_CREATE_STATS_TABLE = "CREATE TABLE " + StatsEntry.TABLE_NAME + " (" +
+                StatsEntry._ID + " INTEGER PRIMARY KEY," +
+                StatsEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_PERIOD + " TEXT NOT NULL, " +
+                StatsEntry.COLUMN_BUCKET + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_DAYS + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_LOW + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_HIGH + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_SUM_MIN + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_SUM_MAX + " INTEGER NOT NULL, " +
+                StatsEntry.COLUMN_WET_DAYS + " INTEGER NOT NULL, " +
+
+                " FOREIGN KEY (" + StatsEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+
+                " UNIQUE (" + StatsEntry.COLUMN_LOC_KEY + ", " + StatsEntry.COLUMN_PERIOD + ", " +
+                StatsEntry.COLUMN_BUCKET + ") ON CONFLICT REPLACE);";
+
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_HOURLY_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_STATS_TABLE);
     }
 
     @Override
@@ -93,6 +171,8 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         // should be your top priority before modifying this method.
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HourlyEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + StatsEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
@@ -17,23 +17,59 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.util.Log;
+
+import com.example.android.sunshine.app.sync.AdaptiveSyncScheduler;
+import com.example.android.sunshine.app.sync.SyncMetrics;
+import com.example.android.sunshine.app.sync.SyncMetricsLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WeatherProvider extends ContentProvider {
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
+    private ChangeBatcher mChangeBatcher;
+    private LocationIdCache mLocationIdCache;
+    private WeatherArchive mArchive;
 
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
+    static final int WEATHER_WITH_LOCATION_AND_RANGE = 103;
+    static final int WEATHER_WITH_LOCATION_PAGE = 104;
+    static final int WEATHER_WITH_LOCATION_ID = 110;
+    static final int WEATHER_WITH_LOCATION_ID_AND_DATE = 111;
+    static final int WEATHER_WITH_LOCATION_ID_AND_RANGE = 112;
+    static final int WEATHER_WITH_LOCATION_ID_PAGE = 113;
     static final int LOCATION = 300;
+    static final int LOCATION_WITH_SETTING = 301;
+    static final int HOURLY = 500;
+    static final int HOURLY_WITH_LOCATION = 501;
+    static final int HOURLY_WITH_LOCATION_AND_RANGE = 502;
+    static final int ARCHIVE_WITH_LOCATION = 600;
+    static final int ARCHIVE_WITH_LOCATION_AND_RANGE = 601;
+    static final int STATS_WITH_LOCATION_AND_PERIOD = 700;
+    static final int STATS_WITH_LOCATION_PERIOD_AND_DATE = 701;
+    static final int SYNC_METRICS = 400;
+    static final int SYNC_SCHEDULE = 401;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
@@ -68,14 +104,153 @@ public class WeatherProvider extends ContentProvider {
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    // When the location id is known, the same queries filter on weather.location_id, which the
+    // database can match without comparing text from the joined table.
+
+    //weather.location_id = ?
+    private static final String sLocationIdSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? ";
+
+    //weather.location_id = ? AND date >= ?
+    private static final String sLocationIdWithStartDateSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
+
+    //weather.location_id = ? AND date = ?
+    private static final String sLocationIdAndDaySelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
+
+    //weather.location_id = ? AND date >= ? AND date < ?
+    private static final String sLocationIdWithDateRangeSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " < ? ";
+
+    //weather.location_id = ? AND date > ?
+    private static final String sLocationIdAfterDateSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " > ? ";
+
+    //location.location_setting = ? AND date >= ? AND date < ?
+    private static final String sLocationSettingWithDateRangeSelection =
+            WeatherContract.LocationEntry.TABLE_NAME +
+                    "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " < ? ";
+
+    //location.location_setting = ? AND date > ?
+    private static final String sLocationSettingAfterDateSelection =
+            WeatherContract.LocationEntry.TABLE_NAME +
+                    "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " > ? ";
+
+    // Pages are keyed on date, so they always come back in date order
+    private static final String sPageSortOrder =
+            WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+
+    //hourly.location_id = ?
+    private static final String sHourlyLocationIdSelection =
+            WeatherContract.HourlyEntry.COLUMN_LOC_KEY + " = ? ";
+
+    //hourly.location_id = ? AND time >= ? AND time < ?
+    private static final String sHourlyLocationIdWithTimeRangeSelection =
+            WeatherContract.HourlyEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.HourlyEntry.COLUMN_TIME + " >= ? AND " +
+                    WeatherContract.HourlyEntry.COLUMN_TIME + " < ? ";
+
+    private static final String sHourlySortOrder =
+            WeatherContract.HourlyEntry.COLUMN_TIME + " ASC";
+
+    // Bulk inserts into the hourly table bind one compiled statement per row instead of going
+    // through ContentValues and SQLiteDatabase.insert.
+    private static final String sInsertHourlySql = "INSERT INTO " +
+            WeatherContract.HourlyEntry.TABLE_NAME + " (" +
+            WeatherContract.HourlyEntry.COLUMN_LOC_KEY + ", " +
+            WeatherContract.HourlyEntry.COLUMN_TIME + ", " +
+            WeatherContract.HourlyEntry.COLUMN_WEATHER_ID + ", " +
+            WeatherContract.HourlyEntry.COLUMN_TEMP + ", " +
+            WeatherContract.HourlyEntry.COLUMN_HUMIDITY + ", " +
+            WeatherContract.HourlyEntry.COLUMN_PRESSURE + ", " +
+            WeatherContract.HourlyEntry.COLUMN_WIND_SPEED + ", " +
+            WeatherContract.HourlyEntry.COLUMN_DEGREES + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Columns bound by sInsertHourlySql, in order
+    private static final String[] sInsertHourlyColumns = {
+            WeatherContract.HourlyEntry.COLUMN_LOC_KEY,
+            WeatherContract.HourlyEntry.COLUMN_TIME,
+            WeatherContract.HourlyEntry.COLUMN_WEATHER_ID,
+            WeatherContract.HourlyEntry.COLUMN_TEMP,
+            WeatherContract.HourlyEntry.COLUMN_HUMIDITY,
+            WeatherContract.HourlyEntry.COLUMN_PRESSURE,
+            WeatherContract.HourlyEntry.COLUMN_WIND_SPEED,
+            WeatherContract.HourlyEntry.COLUMN_DEGREES
+    };
+
+    // What a null projection over weather INNER JOIN location stands for: every weather column
+    // and the location's own columns, qualified so that none is ambiguous.
+    private static final String[] sJoinedWeatherColumns;
+
+    static {
+        String[] weatherColumns = WeatherContract.WeatherEntry.COLUMNS;
+        String[] locationColumns = WeatherContract.LocationEntry.COLUMNS;
+        List<String> columns = new ArrayList<String>();
+        for (String column : weatherColumns) {
+            columns.add(WeatherContract.WeatherEntry.TABLE_NAME + "." + column);
+        }
+        for (String column : locationColumns) {
+            if (!WeatherContract.LocationEntry._ID.equals(column)) {
+                columns.add(WeatherContract.LocationEntry.TABLE_NAME + "." + column);
+            }
+        }
+        sJoinedWeatherColumns = columns.toArray(new String[columns.size()]);
+    }
+
+    // The days being archived, grouped by location and in date order within each
+    private static final String sArchiveSortOrder =
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " ASC, " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+
+    //stats.location_id = ? AND period = ?
+    private static final String sStatsPeriodSelection =
+            WeatherContract.StatsEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.StatsEntry.COLUMN_PERIOD + " = ? ";
+
+    //stats.location_id = ? AND period = ? AND bucket = ?
+    private static final String sStatsBucketSelection =
+            WeatherContract.StatsEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.StatsEntry.COLUMN_PERIOD + " = ? AND " +
+                    WeatherContract.StatsEntry.COLUMN_BUCKET + " = ? ";
+
+    private static final String sStatsSortOrder =
+            WeatherContract.StatsEntry.COLUMN_BUCKET + " ASC";
+
+    //location.location_setting = ?
+    private static final String sLocationTableSettingSelection =
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+        long locationId = mLocationIdCache.getId(locationSetting);
 
         String[] selectionArgs;
         String selection;
 
-        if (startDate == 0) {
+        if (locationId != LocationIdCache.UNKNOWN) {
+            if (startDate == 0) {
+                selection = sLocationIdSelection;
+                selectionArgs = new String[]{Long.toString(locationId)};
+            } else {
+                selection = sLocationIdWithStartDateSelection;
+                selectionArgs = new String[]{Long.toString(locationId), Long.toString(startDate)};
+            }
+        } else if (startDate == 0) {
             selection = sLocationSettingSelection;
             selectionArgs = new String[]{locationSetting};
         } else {
@@ -97,17 +272,432 @@ public class WeatherProvider extends ContentProvider {
             Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
+        long locationId = mLocationIdCache.getId(locationSetting);
+
+        String selection;
+        String[] selectionArgs;
+        if (locationId != LocationIdCache.UNKNOWN) {
+            selection = sLocationIdAndDaySelection;
+            selectionArgs = new String[]{Long.toString(locationId), Long.toString(date)};
+        } else {
+            selection = sLocationSettingAndDaySelection;
+            selectionArgs = new String[]{locationSetting, Long.toString(date)};
+        }
 
         return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
                 projection,
-                sLocationSettingAndDaySelection,
-                new String[]{locationSetting, Long.toString(date)},
+                selection,
+                selectionArgs,
                 null,
                 null,
                 sortOrder
         );
     }
 
+    /**
+     * With fixed point storage, rewrites a projection over the weather table so that the
+     * measurements come back as plain values.  Otherwise returns it as is.
+     */
+    private String[] getWeatherProjection(String[] projection, boolean joined) {
+        if (!mOpenHelper.isFixedPoint()) {
+            return projection;
+        }
+        if (projection == null) {
+            projection = joined ? sJoinedWeatherColumns : WeatherContract.WeatherEntry.COLUMNS;
+        }
+        return WeatherContract.WeatherEntry.decodeFixedPoint(projection);
+    }
+
+    /**
+     * The write side of {@link #getWeatherProjection}: scales the measurements of values about
+     * to be written to the weather table when storage is fixed point.
+     */
+    private ContentValues getWeatherValues(ContentValues values) {
+        return mOpenHelper.isFixedPoint()
+                ? WeatherContract.WeatherEntry.encodeFixedPoint(values) : values;
+    }
+
+    /**
+     * Answers the range and page routes under a location setting.  A page is a keyset page: the
+     * days strictly after a date, limited to a page size, so it costs the same however deep into
+     * the table it starts.
+     */
+    private Cursor getWeatherByLocationSettingWindow(
+            int match, Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
+        long locationId = mLocationIdCache.getId(locationSetting);
+        String location = locationId != LocationIdCache.UNKNOWN
+                ? Long.toString(locationId) : locationSetting;
+
+        String selection;
+        String[] selectionArgs;
+        String limit = null;
+        if (match == WEATHER_WITH_LOCATION_AND_RANGE) {
+            selection = locationId != LocationIdCache.UNKNOWN
+                    ? sLocationIdWithDateRangeSelection : sLocationSettingWithDateRangeSelection;
+            selectionArgs = new String[]{location,
+                    Long.toString(WeatherContract.WeatherEntry.getRangeStartFromUri(uri)),
+                    Long.toString(WeatherContract.WeatherEntry.getRangeEndFromUri(uri))};
+        } else {
+            selection = locationId != LocationIdCache.UNKNOWN
+                    ? sLocationIdAfterDateSelection : sLocationSettingAfterDateSelection;
+            selectionArgs = new String[]{location,
+                    Long.toString(WeatherContract.WeatherEntry.getPageAfterDateFromUri(uri))};
+            sortOrder = sPageSortOrder;
+            limit = getPageLimit(uri);
+        }
+
+        return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder,
+                limit
+        );
+    }
+
+    private static String getPageLimit(Uri uri) {
+        int pageSize = WeatherContract.WeatherEntry.getPageSizeFromUri(uri);
+        return Integer.toString(Math.max(1,
+                Math.min(pageSize, WeatherContract.WeatherEntry.MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * Answers the weather_by_location_id routes.  These read the weather table alone, through its
+     * (location_id, date) index, with no join and no text comparison.
+     */
+    private Cursor getWeatherByLocationId(
+            int match, Uri uri, String[] projection, String sortOrder) {
+        String locationId = Long.toString(WeatherContract.WeatherEntry.getLocationIdFromUri(uri));
+
+        String selection;
+        String[] selectionArgs;
+        String limit = null;
+        switch (match) {
+            case WEATHER_WITH_LOCATION_ID_AND_DATE: {
+                selection = sLocationIdAndDaySelection;
+                selectionArgs = new String[]{locationId,
+                        Long.toString(WeatherContract.WeatherEntry.getDateFromUri(uri))};
+                break;
+            }
+            case WEATHER_WITH_LOCATION_ID_AND_RANGE: {
+                selection = sLocationIdWithDateRangeSelection;
+                selectionArgs = new String[]{locationId,
+                        Long.toString(WeatherContract.WeatherEntry.getRangeStartFromUri(uri)),
+                        Long.toString(WeatherContract.WeatherEntry.getRangeEndFromUri(uri))};
+                break;
+            }
+            case WEATHER_WITH_LOCATION_ID_PAGE: {
+                selection = sLocationIdAfterDateSelection;
+                selectionArgs = new String[]{locationId,
+                        Long.toString(WeatherContract.WeatherEntry.getPageAfterDateFromUri(uri))};
+                sortOrder = sPageSortOrder;
+                limit = getPageLimit(uri);
+                break;
+            }
+            default: {
+                long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+                if (startDate == 0) {
+                    selection = sLocationIdSelection;
+                    selectionArgs = new String[]{locationId};
+                } else {
+                    selection = sLocationIdWithStartDateSelection;
+                    selectionArgs = new String[]{locationId, Long.toString(startDate)};
+                }
+            }
+        }
+
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.WeatherEntry.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder,
+                limit
+        );
+    }
+
+    /**
+     * Answers the hourly routes under a location setting from the hourly table alone.  The location
+     * setting is resolved through the location id cache; an unknown location has no rows.
+     */
+    private Cursor getHourlyByLocationSetting(
+            int match, Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.HourlyEntry.getLocationSettingFromUri(uri);
+        String locationId = Long.toString(mLocationIdCache.getId(locationSetting));
+
+        String selection;
+        String[] selectionArgs;
+        if (match == HOURLY_WITH_LOCATION_AND_RANGE) {
+            selection = sHourlyLocationIdWithTimeRangeSelection;
+            selectionArgs = new String[]{locationId,
+                    Long.toString(WeatherContract.HourlyEntry.getRangeStartFromUri(uri)),
+                    Long.toString(WeatherContract.HourlyEntry.getRangeEndFromUri(uri))};
+        } else {
+            selection = sHourlyLocationIdSelection;
+            selectionArgs = new String[]{locationId};
+        }
+
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.HourlyEntry.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder != null ? sortOrder : sHourlySortOrder
+        );
+    }
+
+    /**
+     * Answers lookups of a single location by its setting.  The common case, asking only for the
+     * row id, is served straight from the location id cache.
+     */
+    private Cursor getLocationBySetting(Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.LocationEntry.getLocationSettingFromUri(uri);
+        if (projection != null && projection.length == 1
+                && WeatherContract.LocationEntry._ID.equals(projection[0])) {
+            MatrixCursor cursor = new MatrixCursor(projection, 1);
+            long locationId = mLocationIdCache.getId(locationSetting);
+            if (locationId != LocationIdCache.UNKNOWN) {
+                cursor.addRow(new Object[]{locationId});
+            }
+            return cursor;
+        }
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.LocationEntry.TABLE_NAME,
+                projection,
+                sLocationTableSettingSelection,
+                new String[]{locationSetting},
+                null,
+                null,
+                sortOrder
+        );
+    }
+
+    /**
+     * Answers the archive routes from the location's archive file, without touching the database.
+     */
+    private Cursor getArchiveByLocationSetting(int match, Uri uri, String[] projection) {
+        String locationSetting = WeatherContract.ArchiveEntry.getLocationSettingFromUri(uri);
+        long startDate = Long.MIN_VALUE;
+        long endDate = Long.MAX_VALUE;
+        if (match == ARCHIVE_WITH_LOCATION_AND_RANGE) {
+            startDate = WeatherContract.ArchiveEntry.getRangeStartFromUri(uri);
+            endDate = WeatherContract.ArchiveEntry.getRangeEndFromUri(uri);
+        }
+        try {
+            return mArchive.query(locationSetting, projection, startDate, endDate);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot read the archive of " + locationSetting, e);
+            return new MatrixCursor(projection != null
+                    ? projection : WeatherContract.ArchiveEntry.COLUMNS, 0);
+        }
+    }
+
+    /**
+     * Answers the stats routes.  A single bucket is one lookup in the stats table's unique index.
+     */
+    private Cursor getStatsByLocationSetting(
+            int match, Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.StatsEntry.getLocationSettingFromUri(uri);
+        String locationId = Long.toString(mLocationIdCache.getId(locationSetting));
+        String period = WeatherContract.StatsEntry.getPeriodFromUri(uri);
+        if (!WeatherContract.StatsEntry.isPeriod(period)) {
+            throw new IllegalArgumentException("Unknown period: " + period);
+        }
+
+        String selection;
+        String[] selectionArgs;
+        if (match == STATS_WITH_LOCATION_PERIOD_AND_DATE) {
+            long bucketStart = WeatherContract.StatsEntry.getBucketStart(period,
+                    WeatherContract.StatsEntry.getDateFromUri(uri));
+            selection = sStatsBucketSelection;
+            selectionArgs = new String[]{locationId, period, Long.toString(bucketStart)};
+        } else {
+            selection = sStatsPeriodSelection;
+            selectionArgs = new String[]{locationId, period};
+        }
+
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.StatsEntry.TABLE_NAME,
+                WeatherContract.StatsEntry.decodeFixedPoint(projection != null
+                        ? projection : WeatherContract.StatsEntry.COLUMNS),
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder != null ? sortOrder : sStatsSortOrder
+        );
+    }
+
+    /**
+     * Copies the weather rows a delete is about to remove into their locations' archives.  The
+     * archive only ever grows, so if the delete is later rolled back the days are simply both
+     * archived and still in the table; archiving them again next time is a no-op.
+     */
+    private void archiveWeather(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        String[] columns = {
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+                WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+                WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+                WeatherContract.WeatherEntry.COLUMN_DEGREES
+        };
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                getWeatherProjection(columns, false), selection, selectionArgs,
+                null, null, sArchiveSortOrder);
+        try {
+            List<ContentValues> days = new ArrayList<ContentValues>();
+            long locationId = LocationIdCache.UNKNOWN;
+            while (cursor.moveToNext()) {
+                long rowLocationId = cursor.getLong(0);
+                if (rowLocationId != locationId) {
+                    appendToArchive(locationId, days);
+                    locationId = rowLocationId;
+                }
+                ContentValues day = new ContentValues();
+                day.put(columns[1], cursor.getLong(1));
+                day.put(columns[2], cursor.getInt(2));
+                for (int i = 3; i < columns.length; i++) {
+                    day.put(columns[i], cursor.getDouble(i));
+                }
+                days.add(day);
+            }
+            appendToArchive(locationId, days);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void appendToArchive(long locationId, List<ContentValues> days) {
+        String locationSetting = mLocationIdCache.getSetting(locationId);
+        if (locationSetting != null && !days.isEmpty()) {
+            try {
+                if (mArchive.append(locationSetting, days) > 0) {
+                    mChangeBatcher.notifyChange(WeatherContract.ArchiveEntry.CONTENT_URI);
+                }
+            } catch (IOException e) {
+                // Losing history is no reason to keep stale days in the table
+                Log.e(LOG_TAG, "Cannot archive the weather of " + locationSetting, e);
+            }
+        }
+        days.clear();
+    }
+
+    /**
+     * Builds a cursor over the in-memory ring buffer of recent sync metrics, most recent first.
+     */
+    private Cursor getSyncMetrics(String[] projection) {
+        if (projection == null) {
+            projection = WeatherContract.SyncMetricsEntry.COLUMNS;
+        }
+        List<SyncMetrics> entries = SyncMetricsLog.getInstance().snapshot();
+        MatrixCursor cursor = new MatrixCursor(projection, entries.size());
+        for (SyncMetrics metrics : entries) {
+            Object[] row = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                row[i] = getSyncMetricsColumn(metrics, projection[i]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static Object getSyncMetricsColumn(SyncMetrics metrics, String column) {
+        switch (column) {
+            case WeatherContract.SyncMetricsEntry.COLUMN_START_TIME:
+                return metrics.getStartTime();
+            case WeatherContract.SyncMetricsEntry.COLUMN_LOCATION:
+                return metrics.getLocation();
+            case WeatherContract.SyncMetricsEntry.COLUMN_DNS:
+                return metrics.getDnsMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_CONNECT:
+                return metrics.getConnectMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_TTFB:
+                return metrics.getTtfbMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_DOWNLOAD:
+                return metrics.getDownloadMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_FETCH:
+                return metrics.getFetchMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_BYTES:
+                return metrics.getBytesReceived();
+            case WeatherContract.SyncMetricsEntry.COLUMN_BYTES_DECODED:
+                return metrics.getBytesDecoded();
+            case WeatherContract.SyncMetricsEntry.COLUMN_PARSE:
+                return metrics.getParseMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_DB:
+                return metrics.getDbMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_WIDGETS:
+                return metrics.getWidgetsMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_MUZEI:
+                return metrics.getMuzeiMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_NOTIFICATION:
+                return metrics.getNotificationMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_HOURLY:
+                return metrics.getHourlyMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_TOTAL:
+                return metrics.getTotalMillis();
+            case WeatherContract.SyncMetricsEntry.COLUMN_STATUS:
+                return metrics.getLocationStatus();
+            default:
+                throw new IllegalArgumentException("Unknown sync metrics column: " + column);
+        }
+    }
+
+    /**
+     * Builds a cursor over the recent decisions of the adaptive sync scheduler, most recent first.
+     */
+    private Cursor getSyncSchedule(String[] projection) {
+        if (projection == null) {
+            projection = WeatherContract.SyncScheduleEntry.COLUMNS;
+        }
+        List<AdaptiveSyncScheduler.Decision> decisions = AdaptiveSyncScheduler.getDecisions();
+        MatrixCursor cursor = new MatrixCursor(projection, decisions.size());
+        for (AdaptiveSyncScheduler.Decision decision : decisions) {
+            Object[] row = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                row[i] = getSyncScheduleColumn(decision, projection[i]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static Object getSyncScheduleColumn(AdaptiveSyncScheduler.Decision decision,
+                                                String column) {
+        switch (column) {
+            case WeatherContract.SyncScheduleEntry.COLUMN_TIME:
+                return decision.time;
+            case WeatherContract.SyncScheduleEntry.COLUMN_INTERVAL:
+                return decision.interval;
+            case WeatherContract.SyncScheduleEntry.COLUMN_FLEX:
+                return decision.flex;
+            case WeatherContract.SyncScheduleEntry.COLUMN_UNCHANGED_STREAK:
+                return decision.unchangedStreak;
+            case WeatherContract.SyncScheduleEntry.COLUMN_CHANGED_FRACTION:
+                return decision.changedFraction;
+            case WeatherContract.SyncScheduleEntry.COLUMN_SEVERE:
+                return decision.severe ? 1 : 0;
+            case WeatherContract.SyncScheduleEntry.COLUMN_METERED:
+                return decision.metered ? 1 : 0;
+            case WeatherContract.SyncScheduleEntry.COLUMN_LOW_BATTERY:
+                return decision.lowBattery ? 1 : 0;
+            case WeatherContract.SyncScheduleEntry.COLUMN_REASON:
+                return decision.reason;
+            default:
+                throw new IllegalArgumentException("Unknown sync schedule column: " + column);
+        }
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -128,8 +718,40 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER, WEATHER);
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_LOCATION);
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/" + WeatherContract.PATH_RANGE
+                + "/#/#", WEATHER_WITH_LOCATION_AND_RANGE);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/" + WeatherContract.PATH_PAGE
+                + "/#/#", WEATHER_WITH_LOCATION_PAGE);
+
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER_BY_LOCATION_ID + "/#",
+                WEATHER_WITH_LOCATION_ID);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER_BY_LOCATION_ID + "/#/#",
+                WEATHER_WITH_LOCATION_ID_AND_DATE);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER_BY_LOCATION_ID + "/#/"
+                + WeatherContract.PATH_RANGE + "/#/#", WEATHER_WITH_LOCATION_ID_AND_RANGE);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER_BY_LOCATION_ID + "/#/"
+                + WeatherContract.PATH_PAGE + "/#/#", WEATHER_WITH_LOCATION_ID_PAGE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION + "/"
+                + WeatherContract.PATH_SETTING + "/*", LOCATION_WITH_SETTING);
+
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY, HOURLY);
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/*", HOURLY_WITH_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/*/" + WeatherContract.PATH_RANGE
+                + "/#/#", HOURLY_WITH_LOCATION_AND_RANGE);
+
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE + "/*", ARCHIVE_WITH_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE + "/*/" + WeatherContract.PATH_RANGE
+                + "/#/#", ARCHIVE_WITH_LOCATION_AND_RANGE);
+
+        matcher.addURI(authority, WeatherContract.PATH_STATS + "/*/*",
+                STATS_WITH_LOCATION_AND_PERIOD);
+        matcher.addURI(authority, WeatherContract.PATH_STATS + "/*/*/#",
+                STATS_WITH_LOCATION_PERIOD_AND_DATE);
+
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_METRICS, SYNC_METRICS);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_SCHEDULE, SYNC_SCHEDULE);
         return matcher;
     }
 
@@ -140,6 +762,17 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new WeatherDbHelper(getContext());
+        mChangeBatcher = new ChangeBatcher(getContext().getContentResolver());
+        mLocationIdCache = new LocationIdCache(mOpenHelper);
+        mArchive = new WeatherArchive(
+                new File(getContext().getFilesDir(), WeatherArchive.DIRECTORY));
+        // Warm the cache off the main thread; lookups that come in first load it themselves.
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mLocationIdCache.warm();
+            }
+        }, "LocationIdCache").start();
         return true;
     }
 
@@ -159,11 +792,36 @@ public class WeatherProvider extends ContentProvider {
             case WEATHER_WITH_LOCATION_AND_DATE:
                 return WeatherContract.WeatherEntry.CONTENT_ITEM_TYPE;
             case WEATHER_WITH_LOCATION:
+            case WEATHER_WITH_LOCATION_AND_RANGE:
+            case WEATHER_WITH_LOCATION_PAGE:
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case WEATHER:
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
+            case WEATHER_WITH_LOCATION_ID_AND_DATE:
+                return WeatherContract.WeatherEntry.CONTENT_ITEM_TYPE;
+            case WEATHER_WITH_LOCATION_ID:
+            case WEATHER_WITH_LOCATION_ID_AND_RANGE:
+            case WEATHER_WITH_LOCATION_ID_PAGE:
+                return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case LOCATION_WITH_SETTING:
+                return WeatherContract.LocationEntry.CONTENT_ITEM_TYPE;
+            case HOURLY:
+            case HOURLY_WITH_LOCATION:
+            case HOURLY_WITH_LOCATION_AND_RANGE:
+                return WeatherContract.HourlyEntry.CONTENT_TYPE;
+            case ARCHIVE_WITH_LOCATION:
+            case ARCHIVE_WITH_LOCATION_AND_RANGE:
+                return WeatherContract.ArchiveEntry.CONTENT_TYPE;
+            case STATS_WITH_LOCATION_AND_PERIOD:
+                return WeatherContract.StatsEntry.CONTENT_TYPE;
+            case STATS_WITH_LOCATION_PERIOD_AND_DATE:
+                return WeatherContract.StatsEntry.CONTENT_ITEM_TYPE;
+            case SYNC_METRICS:
+                return WeatherContract.SyncMetricsEntry.CONTENT_TYPE;
+            case SYNC_SCHEDULE:
+                return WeatherContract.SyncScheduleEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -175,23 +833,34 @@ public class WeatherProvider extends ContentProvider {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
         Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
+        Uri notificationUri = uri;
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
             {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
+                retCursor = getWeatherByLocationSettingAndDate(
+                        uri, getWeatherProjection(projection, true), sortOrder);
                 break;
             }
             // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                retCursor = getWeatherByLocationSetting(
+                        uri, getWeatherProjection(projection, true), sortOrder);
+                break;
+            }
+            // "weather/*/range/#/#" and "weather/*/page/#/#"
+            case WEATHER_WITH_LOCATION_AND_RANGE:
+            case WEATHER_WITH_LOCATION_PAGE: {
+                retCursor = getWeatherByLocationSettingWindow(
+                        match, uri, getWeatherProjection(projection, true), sortOrder);
                 break;
             }
             // "weather"
             case WEATHER: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
                         WeatherContract.WeatherEntry.TABLE_NAME,
-                        projection,
+                        getWeatherProjection(projection, false),
                         selection,
                         selectionArgs,
                         null,
@@ -200,6 +869,18 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "weather_by_location_id/#", "weather_by_location_id/#/#",
+            // "weather_by_location_id/#/range/#/#" and "weather_by_location_id/#/page/#/#"
+            case WEATHER_WITH_LOCATION_ID:
+            case WEATHER_WITH_LOCATION_ID_AND_DATE:
+            case WEATHER_WITH_LOCATION_ID_AND_RANGE:
+            case WEATHER_WITH_LOCATION_ID_PAGE: {
+                retCursor = getWeatherByLocationId(
+                        match, uri, getWeatherProjection(projection, false), sortOrder);
+                // Writes are announced on the weather URI, which isn't an ancestor of this one
+                notificationUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                break;
+            }
             // "location"
             case LOCATION: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
@@ -213,11 +894,60 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "location/setting/*"
+            case LOCATION_WITH_SETTING: {
+                retCursor = getLocationBySetting(uri, projection, sortOrder);
+                break;
+            }
+            // "hourly"
+            case HOURLY: {
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                );
+                break;
+            }
+            // "hourly/*" and "hourly/*/range/#/#"
+            case HOURLY_WITH_LOCATION:
+            case HOURLY_WITH_LOCATION_AND_RANGE: {
+                retCursor = getHourlyByLocationSetting(match, uri, projection, sortOrder);
+                break;
+            }
+            // "archive/*" and "archive/*/range/#/#"
+            case ARCHIVE_WITH_LOCATION:
+            case ARCHIVE_WITH_LOCATION_AND_RANGE: {
+                retCursor = getArchiveByLocationSetting(match, uri, projection);
+                notificationUri = WeatherContract.ArchiveEntry.CONTENT_URI;
+                break;
+            }
+            // "stats/*/*" and "stats/*/*/#"
+            case STATS_WITH_LOCATION_AND_PERIOD:
+            case STATS_WITH_LOCATION_PERIOD_AND_DATE: {
+                retCursor = getStatsByLocationSetting(match, uri, projection, sortOrder);
+                // Stats only change with the weather rows
+                notificationUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                break;
+            }
+            // "sync_metrics"
+            case SYNC_METRICS: {
+                retCursor = getSyncMetrics(projection);
+                break;
+            }
+            // "sync_schedule"
+            case SYNC_SCHEDULE: {
+                retCursor = getSyncSchedule(projection);
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        retCursor.setNotificationUri(getContext().getContentResolver(), uri);
+        retCursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         return retCursor;
     }
 
@@ -233,7 +963,18 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                long _id;
+                db.beginTransaction();
+                try {
+                    _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null,
+                            getWeatherValues(values));
+                    if (_id > 0) {
+                        WeatherStats.add(db, values);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
@@ -242,8 +983,18 @@ public class WeatherProvider extends ContentProvider {
             }
             case LOCATION: {
                 long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
-                if ( _id > 0 )
+                if ( _id > 0 ) {
+                    mLocationIdCache.put(_id, values.getAsString(
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
+                } else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                break;
+            }
+            case HOURLY: {
+                long _id = db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null, values);
+                if ( _id > 0 )
+                    returnUri = WeatherContract.HourlyEntry.buildHourlyUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
@@ -251,7 +1002,7 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        mChangeBatcher.notifyChange(uri);
         return returnUri;
     }
 
@@ -264,19 +1015,30 @@ public class WeatherProvider extends ContentProvider {
         if ( null == selection ) selection = "1";
         switch (match) {
             case WEATHER:
+                if (WeatherContract.WeatherEntry.isArchivingUri(uri)) {
+                    archiveWeather(db, selection, selectionArgs);
+                }
                 rowsDeleted = db.delete(
                         WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    mLocationIdCache.invalidate();
+                    WeatherStats.deleteOrphans(db);
+                }
+                break;
+            case HOURLY:
+                rowsDeleted = db.delete(
+                        WeatherContract.HourlyEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            mChangeBatcher.notifyChange(uri);
         }
         return rowsDeleted;
     }
@@ -299,18 +1061,21 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER:
                 normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
+                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME,
+                        getWeatherValues(values), selection, selectionArgs);
                 break;
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                if (rowsUpdated != 0) {
+                    mLocationIdCache.invalidate();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            mChangeBatcher.notifyChange(uri);
         }
         return rowsUpdated;
     }
@@ -326,8 +1091,10 @@ public class WeatherProvider extends ContentProvider {
                 try {
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null,
+                                getWeatherValues(value));
                         if (_id != -1) {
+                            WeatherStats.add(db, value);
                             returnCount++;
                         }
                     }
@@ -335,13 +1102,115 @@ public class WeatherProvider extends ContentProvider {
                 } finally {
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                mChangeBatcher.notifyChange(uri);
                 return returnCount;
+            case HOURLY:
+                return bulkInsertHourly(db, uri, values);
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    private int bulkInsertHourly(SQLiteDatabase db, Uri uri, ContentValues[] values) {
+        int returnCount = 0;
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(sInsertHourlySql);
+        try {
+            for (ContentValues value : values) {
+                for (int i = 0; i < sInsertHourlyColumns.length; i++) {
+                    Long column = value.getAsLong(sInsertHourlyColumns[i]);
+                    if (column != null) {
+                        insert.bindLong(i + 1, column);
+                    } else {
+                        insert.bindNull(i + 1);
+                    }
+                }
+                try {
+                    insert.executeInsert();
+                    returnCount++;
+                } catch (SQLiteConstraintException e) {
+                    // Same as SQLiteDatabase.insert: a row missing a column is skipped
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+        mChangeBatcher.notifyChange(uri);
+        return returnCount;
+    }
+
+    /**
+     * Applies all the operations in a single transaction, with one change notification per table
+     * once it commits.  If any operation fails, none of them are kept.
+     *
+     * Operations built with {@link ContentProviderOperation.Builder#withYieldAllowed(boolean)}
+     * mark points where a long batch may briefly release the database to other threads.  Work
+     * done before a yield point that was actually used is committed early, so callers that need
+     * the whole batch to be atomic simply don't allow yields.  Yield points are ignored when the
+     * batch runs inside an outer {@link #beginBatch()}, which promises to commit as a whole.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        boolean successful = false;
+        final boolean outermost = !db.inTransaction();
+        beginBatch();
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                final ContentProviderOperation operation = operations.get(i);
+                if (outermost && i > 0 && operation.isYieldAllowed()) {
+                    db.yieldIfContendedSafely();
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            successful = true;
+            return results;
+        } finally {
+            endBatch(successful);
+        }
+    }
+
+    /**
+     * Opens a batch on the calling thread: a database transaction plus a hold on change
+     * notifications.  Writes made through this provider until the matching
+     * {@link #endBatch(boolean)} commit together, and observers hear about them once, through
+     * the deepest URI the changes to their table have in common.  Batches nest; only the
+     * outermost one commits.
+     *
+     * In-process callers reach this through
+     * {@link android.content.ContentProviderClient#getLocalContentProvider()}.
+     */
+    public void beginBatch() {
+        mOpenHelper.getWritableDatabase().beginTransaction();
+        mChangeBatcher.begin();
+    }
+
+    /**
+     * Closes the batch opened by the matching {@link #beginBatch()}.
+     *
+     * @param successful Whether the writes should be kept.  If any level of a nested batch
+     *                   passes false, the whole batch is rolled back and no one is notified.
+     */
+    public void endBatch(boolean successful) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        try {
+            if (successful) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            db.endTransaction();
+            mChangeBatcher.end(successful);
+            if (!successful) {
+                // Location rows cached during the batch may just have been rolled back
+                mLocationIdCache.invalidate();
+            }
+        }
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.StatsEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Keeps the stats table in step with the weather rows written through the provider.
+ *
+ * Each day has its own bucket holding its latest values.  The week and month buckets are
+ * updated from the difference between a day's new and previous values, so writing a day costs
+ * a few indexed reads and writes however long the history is.  Temperatures are kept as
+ * integers scaled by {@link StatsEntry#TEMP_SCALE}, so sums and counts always adjust exactly,
+ * with no drift however often a day is rewritten.  The only case that needs more is a day that
+ * held its bucket's low or high and no longer does; the extreme is then taken again from the
+ * bucket's day rows, at most 31 of them.
+ */
+final class WeatherStats {
+    // The periods built up from day buckets
+    private static final String[] AGGREGATE_PERIODS = {
+            StatsEntry.PERIOD_WEEK, StatsEntry.PERIOD_MONTH
+    };
+
+    private static final String[] BUCKET_COLUMNS = {
+            StatsEntry.COLUMN_DAYS,
+            StatsEntry.COLUMN_LOW,
+            StatsEntry.COLUMN_HIGH,
+            StatsEntry.COLUMN_SUM_MIN,
+            StatsEntry.COLUMN_SUM_MAX,
+            StatsEntry.COLUMN_WET_DAYS
+    };
+
+    //stats.location_id = ? AND period = ? AND bucket = ?
+    private static final String sBucketSelection =
+            StatsEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    StatsEntry.COLUMN_PERIOD + " = ? AND " +
+                    StatsEntry.COLUMN_BUCKET + " = ? ";
+
+    //stats.location_id = ? AND period = ? AND bucket >= ? AND bucket < ?
+    private static final String sBucketRangeSelection =
+            StatsEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    StatsEntry.COLUMN_PERIOD + " = ? AND " +
+                    StatsEntry.COLUMN_BUCKET + " >= ? AND " +
+                    StatsEntry.COLUMN_BUCKET + " < ? ";
+
+    // Stats of locations that no longer exist
+    private static final String sOrphanSelection =
+            StatsEntry.COLUMN_LOC_KEY + " NOT IN (SELECT " + LocationEntry._ID +
+                    " FROM " + LocationEntry.TABLE_NAME + ")";
+
+    private WeatherStats() {
+    }
+
+    /**
+     * Folds a weather row that was just written into its day, week and month buckets.  Call it
+     * in the same transaction as the write.
+     *
+     * @param values The row as written, with a normalized date and plain (not fixed point)
+     *               measurements.
+     */
+    static void add(SQLiteDatabase db, ContentValues values) {
+        long locationId = values.getAsLong(WeatherEntry.COLUMN_LOC_KEY);
+        long date = values.getAsLong(WeatherEntry.COLUMN_DATE);
+        Bucket day = new Bucket(
+                WeatherContract.toFixedPoint(values.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                        StatsEntry.TEMP_SCALE),
+                WeatherContract.toFixedPoint(values.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                        StatsEntry.TEMP_SCALE),
+                StatsEntry.isWet(values.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID)));
+
+        Bucket previous = read(db, locationId, StatsEntry.PERIOD_DAY, date);
+        if (day.equals(previous)) {
+            return;
+        }
+        write(db, locationId, StatsEntry.PERIOD_DAY, date, day);
+
+        for (String period : AGGREGATE_PERIODS) {
+            long bucketStart = StatsEntry.getBucketStart(period, date);
+            Bucket bucket = read(db, locationId, period, bucketStart);
+            if (bucket == null) {
+                bucket = day;
+            } else if (!bucket.replace(previous, day)) {
+                repairExtremes(db, locationId, period, bucketStart, bucket);
+            }
+            write(db, locationId, period, bucketStart, bucket);
+        }
+    }
+
+    /**
+     * Drops the stats of deleted locations.
+     */
+    static void deleteOrphans(SQLiteDatabase db) {
+        db.delete(StatsEntry.TABLE_NAME, sOrphanSelection, null);
+    }
+
+    private static Bucket read(SQLiteDatabase db, long locationId, String period, long bucket) {
+        Cursor cursor = db.query(StatsEntry.TABLE_NAME, BUCKET_COLUMNS, sBucketSelection,
+                new String[]{Long.toString(locationId), period, Long.toString(bucket)},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new Bucket(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2),
+                    cursor.getLong(3), cursor.getLong(4), cursor.getInt(5));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void write(SQLiteDatabase db, long locationId, String period, long bucketStart,
+                              Bucket bucket) {
+        ContentValues values = new ContentValues();
+        values.put(StatsEntry.COLUMN_LOC_KEY, locationId);
+        values.put(StatsEntry.COLUMN_PERIOD, period);
+        values.put(StatsEntry.COLUMN_BUCKET, bucketStart);
+        values.put(StatsEntry.COLUMN_DAYS, bucket.days);
+        values.put(StatsEntry.COLUMN_LOW, bucket.low);
+        values.put(StatsEntry.COLUMN_HIGH, bucket.high);
+        values.put(StatsEntry.COLUMN_SUM_MIN, bucket.sumMin);
+        values.put(StatsEntry.COLUMN_SUM_MAX, bucket.sumMax);
+        values.put(StatsEntry.COLUMN_WET_DAYS, bucket.wetDays);
+        // The UNIQUE constraint replaces the previous row of the bucket
+        db.insert(StatsEntry.TABLE_NAME, null, values);
+    }
+
+    private static void repairExtremes(SQLiteDatabase db, long locationId, String period,
+                                       long bucketStart, Bucket bucket) {
+        Cursor cursor = db.query(StatsEntry.TABLE_NAME,
+                new String[]{"MIN(" + StatsEntry.COLUMN_LOW + ")",
+                        "MAX(" + StatsEntry.COLUMN_HIGH + ")"},
+                sBucketRangeSelection,
+                new String[]{Long.toString(locationId), StatsEntry.PERIOD_DAY,
+                        Long.toString(bucketStart),
+                        Long.toString(StatsEntry.getNextBucketStart(period, bucketStart))},
+                null, null, null);
+        try {
+            cursor.moveToFirst();
+            bucket.low = cursor.getLong(0);
+            bucket.high = cursor.getLong(1);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static final class Bucket {
+        // Temperatures scaled by StatsEntry.TEMP_SCALE
+        int days;
+        long low;
+        long high;
+        long sumMin;
+        long sumMax;
+        int wetDays;
+
+        Bucket(int days, long low, long high, long sumMin, long sumMax, int wetDays) {
+            this.days = days;
+            this.low = low;
+            this.high = high;
+            this.sumMin = sumMin;
+            this.sumMax = sumMax;
+            this.wetDays = wetDays;
+        }
+
+        // A single day
+        Bucket(long min, long max, boolean wet) {
+            this(1, min, max, min, max, wet ? 1 : 0);
+        }
+
+        /**
+         * Swaps a day's previous values, or none, for its new ones.
+         *
+         * @return false if the low or high may now be wrong and has to be recomputed.
+         */
+        boolean replace(Bucket previous, Bucket day) {
+            days += day.days - (previous != null ? previous.days : 0);
+            sumMin += day.sumMin - (previous != null ? previous.sumMin : 0);
+            sumMax += day.sumMax - (previous != null ? previous.sumMax : 0);
+            wetDays += day.wetDays - (previous != null ? previous.wetDays : 0);
+
+            boolean exact = true;
+            if (day.low <= low) {
+                low = day.low;
+            } else if (previous != null && previous.low == low) {
+                exact = false;
+            }
+            if (day.high >= high) {
+                high = day.high;
+            } else if (previous != null && previous.high == high) {
+                exact = false;
+            }
+            return exact;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            Bucket other = (Bucket) o;
+            return days == other.days && low == other.low && high == other.high
+                    && sumMin == other.sumMin && sumMax == other.sumMax
+                    && wetDays == other.wetDays;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = low * 31 + high;
+            return (int) (bits ^ (bits >>> 32)) * 31 + days * 7 + wetDays;
+        }
+    }
+}
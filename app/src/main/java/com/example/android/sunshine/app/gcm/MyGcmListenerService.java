@@ -29,6 +29,7 @@ import android.widget.Toast;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.WeatherArtCache;
 import com.google.android.gms.gcm.GcmListenerService;
 
 import org.json.JSONException;
@@ -44,6 +45,9 @@ public class MyGcmListenerService extends GcmListenerService {
 
     public static final int NOTIFICATION_ID = 1;
 
+    // Weather alerts show the storm art
+    private static final int STORM_WEATHER_ID = 200;
+
     /**
      * Called when message is received.
      *
@@ -92,10 +96,15 @@ public class MyGcmListenerService extends GcmListenerService {
                 PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class), 0);
 
         // Notifications using both a large and a small icon (which yours should!) need the large
-        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
-        // object along in our notification builder. Generally, you want to use the app icon as the
-        // small icon, so that users understand what app is triggering this notification.
-        Bitmap largeIcon = BitmapFactory.decodeResource(this.getResources(), R.drawable.art_storm);
+        // icon as a bitmap. So we take the storm art from the art cache if it already holds it,
+        // scaled to the large icon size, and otherwise decode the bundled art rather than wait on
+        // the network here.  Generally, you want to use the app icon as the small icon, so that
+        // users understand what app is triggering this notification.
+        Bitmap largeIcon = WeatherArtCache.getInstance(this)
+                .getCached(STORM_WEATHER_ID, WeatherArtCache.SIZE_NOTIFICATION);
+        if (largeIcon == null) {
+            largeIcon = BitmapFactory.decodeResource(getResources(), R.drawable.art_storm);
+        }
         NotificationCompat.Builder mBuilder =
                 new NotificationCompat.Builder(this)
                         .setSmallIcon(R.drawable.art_clear)
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.support.v4.content.FileProvider;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Display;
+import android.view.WindowManager;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.android.sunshine.app.AtomicFileWriter;
+import com.example.android.sunshine.app.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The Muzei source's photos, downloaded once per condition group and scaled down to just cover
+ * the screen, in the app's cache directory.  Muzei is handed a content URI to the cached file
+ * rather than the full-size remote photo.
+ *
+ * Photos are keyed by their URL, which stands for the condition group, and by the screen size
+ * they were scaled for; photos scaled for another screen size are dropped.  Every method blocks
+ * on the network and disk, so call them from a background thread.
+ */
+class MuzeiArtworkCache {
+    private static final String LOG_TAG = MuzeiArtworkCache.class.getSimpleName();
+
+    // Must match the cache-path in res/xml/muzei_paths.xml
+    private static final String DIRECTORY = "muzei";
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+    private static final int JPEG_QUALITY = 90;
+
+    private final Context mContext;
+    private final File mDirectory;
+    // Portrait dimensions, so that rotating the device doesn't refetch every photo
+    private final int mWidth;
+    private final int mHeight;
+
+    MuzeiArtworkCache(Context context) {
+        mContext = context.getApplicationContext();
+        mDirectory = new File(mContext.getCacheDir(), DIRECTORY);
+
+        DisplayMetrics metrics = getScreenMetrics(mContext);
+        mWidth = Math.min(metrics.widthPixels, metrics.heightPixels);
+        mHeight = Math.max(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    // Muzei itself needs Jelly Bean MR1, but the source is built for the app's minimum SDK
+    private static DisplayMetrics getScreenMetrics(Context context) {
+        DisplayMetrics metrics = new DisplayMetrics();
+        Display display = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            getRealMetrics(display, metrics);
+        } else {
+            // Leaves out the system bars, which the wallpaper also spans; close enough
+            display.getMetrics(metrics);
+        }
+        return metrics;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static void getRealMetrics(Display display, DisplayMetrics metrics) {
+        display.getRealMetrics(metrics);
+    }
+
+    /**
+     * @return a content URI Muzei can read the photo at imageUrl from, downloading and caching
+     *         the photo first if needed, or null if it could not be fetched.
+     */
+    Uri get(String imageUrl) {
+        File file = getFile(imageUrl);
+        if (!file.exists() && !fetch(imageUrl, file)) {
+            return null;
+        }
+        Uri uri = FileProvider.getUriForFile(mContext,
+                mContext.getString(R.string.muzei_file_authority), file);
+        // Muzei reads the photo from its own process
+        mContext.grantUriPermission(MUZEI_PACKAGE, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return uri;
+    }
+
+    /**
+     * Caches the photo at imageUrl if it isn't cached already.
+     */
+    void prefetch(String imageUrl) {
+        File file = getFile(imageUrl);
+        if (!file.exists()) {
+            fetch(imageUrl, file);
+        }
+    }
+
+    private File getFile(String imageUrl) {
+        return new File(mDirectory, Integer.toHexString(imageUrl.hashCode())
+                + "_" + mWidth + "x" + mHeight + ".jpg");
+    }
+
+    private boolean fetch(String imageUrl, File file) {
+        dropOtherSizes();
+
+        Bitmap bitmap;
+        try {
+            // Decoded at the smallest power of two scale that still covers the screen, which
+            // keeps a full-size photo from ever being decoded whole
+            bitmap = Glide.with(mContext)
+                    .load(imageUrl)
+                    .asBitmap()
+                    .diskCacheStrategy(DiskCacheStrategy.NONE)
+                    .skipMemoryCache(true)
+                    .dontTransform()
+                    .into(mWidth, mHeight).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving " + imageUrl, e);
+            return false;
+        }
+        final Bitmap photo = scaleToCover(bitmap);
+
+        try {
+            AtomicFileWriter.write(file, new AtomicFileWriter.Content() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    photo.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                }
+            });
+            return true;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error caching " + imageUrl, e);
+            return false;
+        }
+    }
+
+    // Scales the photo down, keeping its aspect ratio, until one side matches the screen
+    private Bitmap scaleToCover(Bitmap bitmap) {
+        float scale = Math.max((float) mWidth / bitmap.getWidth(),
+                (float) mHeight / bitmap.getHeight());
+        if (scale >= 1f) {
+            return bitmap;
+        }
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale),
+                true);
+    }
+
+    private void dropOtherSizes() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String suffix = "_" + mWidth + "x" + mHeight + ".jpg";
+        for (File file : files) {
+            if (!file.getName().endsWith(suffix)) {
+                file.delete();
+            }
+        }
+    }
+}
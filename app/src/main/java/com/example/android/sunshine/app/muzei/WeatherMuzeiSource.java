@@ -38,6 +38,11 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
 
+    // Today, whose photo is published, and the days whose photos are prefetched
+    private static final int FORECAST_DAYS = 3;
+    // Marks artwork published from the remote photo because caching it failed
+    private static final String REMOTE_TOKEN_SUFFIX = "#remote";
+
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
     }
@@ -55,25 +60,54 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     @Override
     protected void onUpdate(int reason) {
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationFirstPage(
+                location, System.currentTimeMillis(), FORECAST_DAYS);
         Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
                 null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
+        MuzeiArtworkCache cache = new MuzeiArtworkCache(this);
         if (cursor.moveToFirst()) {
             int weatherId = cursor.getInt(INDEX_WEATHER_ID);
             String desc = cursor.getString(INDEX_SHORT_DESC);
 
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
-            // Only publish a new wallpaper if we have a valid image
-            if (imageUrl != null) {
+            // Only publish a new wallpaper if we have a valid image, and only when the condition
+            // group or the location has changed: the photo would be the same one
+            if (imageUrl != null && !isCurrentArtwork(imageUrl, location)) {
+                Uri imageUri = cache.get(imageUrl);
+                String token = imageUrl;
+                if (imageUri == null) {
+                    // Muzei can still download the photo itself.  The token differs from the
+                    // cached photo's, so the next update publishes the cached one in its place.
+                    imageUri = Uri.parse(imageUrl);
+                    token = imageUrl + REMOTE_TOKEN_SUFFIX;
+                }
                 publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
+                        .imageUri(imageUri)
+                        .token(token)
                         .title(desc)
                         .byline(location)
                         .viewIntent(new Intent(this, MainActivity.class))
                         .build());
             }
         }
+        // Photos for the coming days, so the next change of conditions is published from disk
+        while (cursor.moveToNext()) {
+            String imageUrl = Utility.getImageUrlForWeatherCondition(
+                    cursor.getInt(INDEX_WEATHER_ID));
+            if (imageUrl != null) {
+                cache.prefetch(imageUrl);
+            }
+        }
         cursor.close();
     }
+
+    private boolean isCurrentArtwork(String imageUrl, String location) {
+        Artwork current = getCurrentArtwork();
+        return current != null
+                && imageUrl.equals(current.getToken())
+                && location.equals(current.getByline());
+    }
 }
@@ -0,0 +1,345 @@
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the periodic sync interval after every successful sync, instead of always using the
+ * fixed {@link SunshineSyncAdapter#SYNC_INTERVAL}.
+ * <ul>
+ *     <li>Each sync in a row that brings back the same forecast doubles the interval, up to
+ *     {@link #MAX_INTERVAL}.</li>
+ *     <li>A forecast that moved a lot since the last sync halves it, and severe weather in the
+ *     next two days drops it to {@link #MIN_INTERVAL}.</li>
+ *     <li>Metered networks and a low, discharging battery each double it, unless severe weather
+ *     is on the way.</li>
+ * </ul>
+ * Every decision is kept in a {@link RingBuffer} for inspection, and exposed read-only by the
+ * WeatherProvider.
+ */
+public class AdaptiveSyncScheduler {
+    private static final String LOG_TAG = AdaptiveSyncScheduler.class.getSimpleName();
+
+    // All intervals in seconds, like SYNC_INTERVAL
+    public static final int MIN_INTERVAL = 60 * 60;
+    public static final int MAX_INTERVAL = 60 * 60 * 12;
+
+    // Share of the overlapping days that must have changed for the forecast to count as volatile
+    static final float VOLATILE_FRACTION = 1f / 3f;
+    // A day counts as changed if its condition changed or a temperature moved this much (C)
+    static final double TEMPERATURE_CHANGE_THRESHOLD = 3.0;
+    // Below this battery percentage, and not charging, syncs are deferred
+    static final int LOW_BATTERY_PERCENT = 15;
+    // How many of the upcoming days are checked for severe weather
+    static final int SEVERE_LOOKAHEAD_DAYS = 2;
+
+    static final int DECISION_LOG_CAPACITY = 32;
+
+    private static final String PREFS_NAME = "sync_schedule";
+    private static final String PREF_SIGNATURES = "signatures";
+    private static final String PREF_UNCHANGED_STREAK = "unchanged_streak";
+    private static final String PREF_INTERVAL = "interval";
+
+    private static final RingBuffer<Decision> sDecisions =
+            new RingBuffer<Decision>(DECISION_LOG_CAPACITY);
+
+    /**
+     * One scheduling decision, with the inputs that led to it.
+     */
+    public static class Decision {
+        public final long time;
+        public final int interval;
+        public final int flex;
+        public final int unchangedStreak;
+        public final float changedFraction;
+        public final boolean severe;
+        public final boolean metered;
+        public final boolean lowBattery;
+        public final String reason;
+
+        Decision(long time, int interval, int unchangedStreak, float changedFraction,
+                 boolean severe, boolean metered, boolean lowBattery, String reason) {
+            this.time = time;
+            this.interval = interval;
+            this.flex = interval / 3;
+            this.unchangedStreak = unchangedStreak;
+            this.changedFraction = changedFraction;
+            this.severe = severe;
+            this.metered = metered;
+            this.lowBattery = lowBattery;
+            this.reason = reason;
+        }
+
+        public JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_TIME, time)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_INTERVAL, interval)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_FLEX, flex)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_UNCHANGED_STREAK, unchangedStreak)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_CHANGED_FRACTION, changedFraction)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_SEVERE, severe)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_METERED, metered)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_LOW_BATTERY, lowBattery)
+                    .put(WeatherContract.SyncScheduleEntry.COLUMN_REASON, reason);
+        }
+
+        @Override
+        public String toString() {
+            return "Decision{interval=" + interval + "s, " + reason + "}";
+        }
+    }
+
+    private final Context mContext;
+
+    public AdaptiveSyncScheduler(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Compares a freshly synced forecast with the previous one, decides on the next interval and
+     * reschedules the periodic sync if it changed.
+     *
+     * @param forecast The rows just written to the weather table.
+     * @return the decision taken.
+     */
+    public Decision onSyncCompleted(ContentValues[] forecast) {
+        SharedPreferences prefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        Map<Long, String> previous = parseSignatures(prefs.getString(PREF_SIGNATURES, ""));
+        Map<Long, String> current = new HashMap<Long, String>(forecast.length);
+        for (ContentValues values : forecast) {
+            current.put(values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                    signature(values));
+        }
+        float changedFraction = changedFraction(previous, current);
+
+        int unchangedStreak = prefs.getInt(PREF_UNCHANGED_STREAK, 0);
+        unchangedStreak = !previous.isEmpty() && changedFraction == 0f ? unchangedStreak + 1 : 0;
+
+        boolean severe = isSevere(forecast);
+        boolean metered = isMetered();
+        boolean lowBattery = isLowBattery();
+
+        StringBuilder reason = new StringBuilder();
+        int interval = computeInterval(unchangedStreak, changedFraction, severe, metered,
+                lowBattery, reason);
+        Decision decision = new Decision(System.currentTimeMillis(), interval, unchangedStreak,
+                changedFraction, severe, metered, lowBattery, reason.toString());
+
+        int scheduled = prefs.getInt(PREF_INTERVAL, SunshineSyncAdapter.SYNC_INTERVAL);
+        if (interval != scheduled) {
+            SunshineSyncAdapter.configurePeriodicSync(mContext, interval, decision.flex);
+        }
+
+        prefs.edit()
+                .putString(PREF_SIGNATURES, formatSignatures(current))
+                .putInt(PREF_UNCHANGED_STREAK, unchangedStreak)
+                .putInt(PREF_INTERVAL, interval)
+                .commit();
+
+        sDecisions.add(decision);
+        Log.d(LOG_TAG, decision.toString());
+        return decision;
+    }
+
+    /**
+     * Forgets the scheduled interval and the forecast history.  Call it whenever the periodic
+     * sync is set up afresh at {@link SunshineSyncAdapter#SYNC_INTERVAL}, so that the next
+     * decision compares against the interval actually scheduled.
+     */
+    public static void reset(Context context) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    /**
+     * The interval policy itself, free of any Android state so that it is easy to reason about.
+     *
+     * @param reason Receives a human readable explanation of the decision.
+     * @return the interval, in seconds.
+     */
+    static int computeInterval(int unchangedStreak, float changedFraction, boolean severe,
+                               boolean metered, boolean lowBattery, StringBuilder reason) {
+        int interval = SunshineSyncAdapter.SYNC_INTERVAL;
+        if (severe) {
+            reason.append("severe weather ahead");
+            return MIN_INTERVAL;
+        }
+        if (changedFraction >= VOLATILE_FRACTION) {
+            interval /= 2;
+            reason.append("volatile forecast");
+        } else if (unchangedStreak > 0) {
+            interval <<= Math.min(unchangedStreak, 2);
+            reason.append(unchangedStreak).append(" unchanged syncs");
+        } else {
+            reason.append("baseline");
+        }
+        if (metered) {
+            interval *= 2;
+            reason.append(", metered network");
+        }
+        if (lowBattery) {
+            interval *= 2;
+            reason.append(", low battery");
+        }
+        return Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+    }
+
+    /**
+     * @return the share of the days present in both forecasts whose outlook changed.
+     */
+    static float changedFraction(Map<Long, String> previous, Map<Long, String> current) {
+        int overlapping = 0;
+        int changed = 0;
+        for (Map.Entry<Long, String> entry : current.entrySet()) {
+            String before = previous.get(entry.getKey());
+            if (before != null) {
+                overlapping++;
+                if (hasChanged(before, entry.getValue())) {
+                    changed++;
+                }
+            }
+        }
+        return overlapping == 0 ? 0f : (float) changed / overlapping;
+    }
+
+    // A day's signature is "weatherId:max:min"
+    private static String signature(ContentValues values) {
+        return values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID) + ":"
+                + values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP) + ":"
+                + values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+    }
+
+    private static boolean hasChanged(String before, String after) {
+        String[] b = before.split(":");
+        String[] a = after.split(":");
+        return !b[0].equals(a[0])
+                || Math.abs(Double.parseDouble(b[1]) - Double.parseDouble(a[1]))
+                        >= TEMPERATURE_CHANGE_THRESHOLD
+                || Math.abs(Double.parseDouble(b[2]) - Double.parseDouble(a[2]))
+                        >= TEMPERATURE_CHANGE_THRESHOLD;
+    }
+
+    private static Map<Long, String> parseSignatures(String formatted) {
+        Map<Long, String> signatures = new HashMap<Long, String>();
+        if (formatted.length() == 0) {
+            return signatures;
+        }
+        for (String day : formatted.split(";")) {
+            int separator = day.indexOf('=');
+            signatures.put(Long.parseLong(day.substring(0, separator)),
+                    day.substring(separator + 1));
+        }
+        return signatures;
+    }
+
+    private static String formatSignatures(Map<Long, String> signatures) {
+        StringBuilder formatted = new StringBuilder();
+        for (Map.Entry<Long, String> entry : signatures.entrySet()) {
+            if (formatted.length() > 0) {
+                formatted.append(';');
+            }
+            formatted.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return formatted.toString();
+    }
+
+    /**
+     * @return whether any of the next {@link #SEVERE_LOOKAHEAD_DAYS} days has a condition worth
+     * watching closely.  The forecast is in date order, today first.
+     */
+    static boolean isSevere(ContentValues[] forecast) {
+        for (int i = 0; i < Math.min(SEVERE_LOOKAHEAD_DAYS, forecast.length); i++) {
+            if (isSevereCondition(
+                    forecast[i].getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isSevereCondition(int weatherId) {
+        // Based on weather code data found at:
+        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        return (weatherId >= 200 && weatherId <= 232)     // thunderstorms
+                || (weatherId >= 502 && weatherId <= 504) // heavy to extreme rain
+                || weatherId == 511                       // freezing rain
+                || weatherId == 602 || weatherId == 622   // heavy snow
+                || weatherId == 771 || weatherId == 781   // squalls, tornado
+                || (weatherId >= 900 && weatherId <= 906);// extreme
+    }
+
+    private boolean isMetered() {
+        ConnectivityManager cm =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return isActiveNetworkMetered(cm);
+        }
+        // Before Jelly Bean, treat anything but wifi as metered
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.getType() != ConnectivityManager.TYPE_WIFI;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static boolean isActiveNetworkMetered(ConnectivityManager cm) {
+        return cm.isActiveNetworkMetered();
+    }
+
+    private boolean isLowBattery() {
+        // ACTION_BATTERY_CHANGED is sticky, so a null receiver just reads the last value
+        Intent battery = mContext.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        if (status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL) {
+            return false;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+
+    /**
+     * @return the recent decisions, most recent first.
+     */
+    public static List<Decision> getDecisions() {
+        return sDecisions.snapshot();
+    }
+
+    /**
+     * @return the recent decisions as a JSON array, most recent first.
+     */
+    public static String exportJson() {
+        JSONArray array = new JSONArray();
+        try {
+            for (Decision decision : getDecisions()) {
+                array.put(decision.toJson());
+            }
+        } catch (JSONException e) {
+            // Only numbers, booleans and strings go in, so this can't happen
+            throw new IllegalStateException(e);
+        }
+        return array.toString();
+    }
+}
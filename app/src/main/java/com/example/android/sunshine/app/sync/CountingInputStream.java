@@ -0,0 +1,46 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it into the sync metrics: as received when it wraps the raw
+ * network stream, or as decoded when it wraps the decompressed one.
+ */
+class CountingInputStream extends FilterInputStream {
+    private final SyncMetrics mMetrics;
+    private final boolean mDecoded;
+
+    CountingInputStream(InputStream in, SyncMetrics metrics, boolean decoded) {
+        super(in);
+        mMetrics = metrics;
+        mDecoded = decoded;
+    }
+
+    private void count(int bytes) {
+        if (mDecoded) {
+            mMetrics.bytesDecoded += bytes;
+        } else {
+            mMetrics.bytesReceived += bytes;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = super.read(buffer, offset, count);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+}
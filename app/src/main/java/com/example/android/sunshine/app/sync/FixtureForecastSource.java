@@ -0,0 +1,102 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays recorded OpenWeatherMap payloads without touching the network, so the parse and
+ * database phases of a sync can be exercised and timed on their own.
+ */
+public class FixtureForecastSource implements ForecastSource {
+    // Payload served for locations that don't have a recording of their own
+    public static final String DEFAULT_FIXTURE = "default";
+
+    private final Map<String, String> mPayloads;
+    private final Map<String, String> mHourlyPayloads;
+
+    /**
+     * @param payloads Recorded responses keyed by location setting.  An entry keyed by
+     *                 {@link #DEFAULT_FIXTURE} is used for any other location.
+     */
+    public FixtureForecastSource(Map<String, String> payloads) {
+        this(payloads, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @param payloads Recorded daily responses, keyed as above.
+     * @param hourlyPayloads Recorded 3-hour step responses, keyed the same way.
+     */
+    public FixtureForecastSource(Map<String, String> payloads,
+                                 Map<String, String> hourlyPayloads) {
+        mPayloads = new HashMap<String, String>(payloads);
+        mHourlyPayloads = new HashMap<String, String>(hourlyPayloads);
+    }
+
+    /**
+     * Loads every "<location>.json" file of an asset directory as a recording.
+     */
+    public static FixtureForecastSource fromAssets(AssetManager assets, String directory)
+            throws IOException {
+        final String SUFFIX = ".json";
+        Map<String, String> payloads = new HashMap<String, String>();
+        for (String name : assets.list(directory)) {
+            if (name.endsWith(SUFFIX)) {
+                payloads.put(name.substring(0, name.length() - SUFFIX.length()),
+                        readFully(assets.open(directory + "/" + name)));
+            }
+        }
+        return new FixtureForecastSource(payloads);
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, "UTF-8");
+        try {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+            return builder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String lookUp(Map<String, String> payloads, String locationQuery) {
+        String payload = payloads.get(locationQuery);
+        return payload != null ? payload : payloads.get(DEFAULT_FIXTURE);
+    }
+
+    @Override
+    public String fetchDailyForecast(String locationQuery, int numDays, SyncMetrics metrics)
+            throws IOException {
+        String payload = lookUp(mPayloads, locationQuery);
+        if (payload == null) {
+            throw new IOException("No recorded forecast for " + locationQuery);
+        }
+        metrics.bytesReceived += payload.length();
+        metrics.bytesDecoded += payload.length();
+        return payload;
+    }
+
+    @Override
+    public Reader openHourlyForecast(String locationQuery, SyncMetrics metrics) {
+        String payload = lookUp(mHourlyPayloads, locationQuery);
+        if (payload == null) {
+            // Most recordings are daily only
+            return null;
+        }
+        metrics.bytesReceived += payload.length();
+        metrics.bytesDecoded += payload.length();
+        return new StringReader(payload);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HTTP layer used by the sync adapter.  Responses are requested gzip-compressed and inflated
+ * while streaming, connections are left to the platform's default keep-alive pool between
+ * locations and syncs, and every request is bounded by connect and read timeouts so a stalled
+ * socket can't hang the sync thread.
+ */
+public class ForecastHttpClient {
+    private static final String LOG_TAG = ForecastHttpClient.class.getSimpleName();
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 20 * 1000;
+
+    private static final ForecastHttpClient sInstance = new ForecastHttpClient();
+
+    private volatile int mConnectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int mReadTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    public static ForecastHttpClient getInstance() {
+        return sInstance;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        mReadTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Performs a GET and returns the decoded body.
+     *
+     * @return the body as a String, empty if the server sent none.
+     * @throws IOException on connection failure, timeout or a non-2xx response.
+     */
+    public String get(URL url, SyncMetrics metrics) throws IOException {
+        long start = SyncMetrics.mark();
+        InputStream in = open(url, metrics);
+        long mark = SyncMetrics.mark();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            metrics.downloadMillis = SyncMetrics.since(mark);
+            metrics.fetchMillis = SyncMetrics.since(start);
+            in.close();
+        }
+    }
+
+    /**
+     * Performs a GET and returns the decoded body as a stream, for callers that parse while
+     * downloading.  Closing the stream hands the connection back to the keep-alive pool, so it
+     * must always be closed, and read to the end when possible.
+     */
+    public InputStream open(URL url, SyncMetrics metrics) throws IOException {
+        // Resolve the host up front so that DNS shows up as its own phase; the connection
+        // below then hits the resolver cache.
+        long mark = SyncMetrics.mark();
+        InetAddress.getByName(url.getHost());
+        metrics.dnsMillis = SyncMetrics.since(mark);
+
+        mark = SyncMetrics.mark();
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        try {
+            urlConnection.setRequestMethod("GET");
+            urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+            urlConnection.setReadTimeout(mReadTimeoutMillis);
+            // Asking explicitly turns off the platform's transparent decompression, which lets us
+            // count the bytes that actually crossed the network.
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+            urlConnection.connect();
+            metrics.connectMillis = SyncMetrics.since(mark);
+
+            mark = SyncMetrics.mark();
+            int responseCode = urlConnection.getResponseCode();
+            metrics.ttfbMillis = SyncMetrics.since(mark);
+            if (responseCode < 200 || responseCode >= 300) {
+                throw new IOException("HTTP " + responseCode + " from " + url.getHost());
+            }
+
+            InputStream in =
+                    new CountingInputStream(urlConnection.getInputStream(), metrics, false);
+            if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            in = new ConnectionInputStream(urlConnection,
+                    new CountingInputStream(in, metrics, true));
+            // No disconnect() here: that would close the socket instead of pooling it.  The
+            // stream disconnects if reading the body fails.
+            return in;
+        } catch (IOException e) {
+            // A failed exchange may leave the socket in an unknown state; don't pool it.
+            Log.d(LOG_TAG, "Dropping connection to " + url.getHost());
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * The body of a connection.  A read that fails partway leaves the socket in an unknown
+     * state, so the connection is then disconnected on close rather than pooled.
+     */
+    private static class ConnectionInputStream extends FilterInputStream {
+        private final HttpURLConnection mConnection;
+        private boolean mFailed;
+
+        ConnectionInputStream(HttpURLConnection connection, InputStream in) {
+            super(in);
+            mConnection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                mFailed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            try {
+                return super.read(buffer, offset, count);
+            } catch (IOException e) {
+                mFailed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            try {
+                return super.skip(count);
+            } catch (IOException e) {
+                mFailed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (mFailed) {
+                    Log.d(LOG_TAG, "Dropping connection to " + mConnection.getURL().getHost());
+                    mConnection.disconnect();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Where the sync adapter gets its raw OpenWeatherMap forecast from.  The default is the live
+ * {@link HttpForecastSource}; tests and benchmarks swap in a {@link FixtureForecastSource} or an
+ * {@link HttpForecastSource} pointed at a local stub server through
+ * {@link SunshineSyncAdapter#setForecastSource(ForecastSource)}.
+ */
+public interface ForecastSource {
+    /**
+     * Fetches the daily forecast for a location.
+     *
+     * @param locationQuery The location setting, as sent to OWM in the "q" parameter.
+     * @param numDays The number of days of forecast to request.
+     * @param metrics Metrics of the running sync; implementations fill in the network phases
+     *                they go through.
+     * @return the forecast in OWM's JSON format, or null if the server sent nothing back.
+     * @throws IOException if the forecast could not be fetched.
+     */
+    String fetchDailyForecast(String locationQuery, int numDays, SyncMetrics metrics)
+            throws IOException;
+
+    /**
+     * Opens the forecast in 3-hour steps for a location.  The result is a stream so it can be
+     * parsed while it downloads; it is several times the size of the daily forecast.
+     *
+     * @param locationQuery The location setting, as sent to OWM in the "q" parameter.
+     * @param metrics Metrics to fill in with the network phases.
+     * @return a reader over the forecast in OWM's JSON format, which the caller must close, or
+     *         null if there is no such forecast.
+     * @throws IOException if the forecast could not be opened.
+     */
+    Reader openHourlyForecast(String locationQuery, SyncMetrics metrics) throws IOException;
+}
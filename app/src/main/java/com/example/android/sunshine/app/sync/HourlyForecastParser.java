@@ -0,0 +1,141 @@
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses OWM's forecast in 3-hour steps straight off the stream with {@link JsonReader}, turning
+ * each step into hourly table values as it goes.  Unlike the daily forecast, the response is
+ * never held in memory as a String or as a tree of JSONObjects.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+class HourlyForecastParser {
+    // These are the names of the JSON objects that need to be extracted.
+    private static final String OWM_LIST = "list";
+    private static final String OWM_TIME = "dt";
+    private static final String OWM_MAIN = "main";
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_WEATHER_ID = "id";
+    private static final String OWM_WIND = "wind";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // The number of values readStep fills in for a complete step
+    private static final int HOURLY_FIELDS = 7;
+
+    /**
+     * @return one set of values per step, for the given location.  Steps missing a field are
+     *         dropped.
+     * @throws IOException if the stream fails or isn't a forecast.
+     */
+    static List<ContentValues> parse(Reader in, long locationId) throws IOException {
+        List<ContentValues> steps = new ArrayList<ContentValues>(40);
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (OWM_LIST.equals(reader.nextName())) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        ContentValues step = readStep(reader);
+                        if (step.size() == HOURLY_FIELDS) {
+                            step.put(HourlyEntry.COLUMN_LOC_KEY, locationId);
+                            steps.add(step);
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // The JSON was well formed but not shaped like a forecast
+            throw new IOException("Unexpected hourly forecast format", e);
+        } finally {
+            reader.close();
+        }
+        return steps;
+    }
+
+    private static ContentValues readStep(JsonReader reader) throws IOException {
+        ContentValues step = new ContentValues(HOURLY_FIELDS + 1);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (OWM_TIME.equals(name)) {
+                step.put(HourlyEntry.COLUMN_TIME, reader.nextLong());
+            } else if (OWM_MAIN.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (OWM_TEMPERATURE.equals(field)) {
+                        step.put(HourlyEntry.COLUMN_TEMP, WeatherContract.toFixedPoint(
+                                reader.nextDouble(), HourlyEntry.TEMP_SCALE));
+                    } else if (OWM_PRESSURE.equals(field)) {
+                        step.put(HourlyEntry.COLUMN_PRESSURE, WeatherContract.toFixedPoint(
+                                reader.nextDouble(), HourlyEntry.PRESSURE_SCALE));
+                    } else if (OWM_HUMIDITY.equals(field)) {
+                        step.put(HourlyEntry.COLUMN_HUMIDITY, (int) Math.round(reader.nextDouble()));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WEATHER.equals(name)) {
+                // Only the first condition is kept, as with the daily forecast
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (step.containsKey(HourlyEntry.COLUMN_WEATHER_ID)) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                            step.put(HourlyEntry.COLUMN_WEATHER_ID, reader.nextInt());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                reader.endArray();
+            } else if (OWM_WIND.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (OWM_WINDSPEED.equals(field)) {
+                        step.put(HourlyEntry.COLUMN_WIND_SPEED, WeatherContract.toFixedPoint(
+                                reader.nextDouble(), HourlyEntry.WIND_SCALE));
+                    } else if (OWM_WIND_DIRECTION.equals(field)) {
+                        step.put(HourlyEntry.COLUMN_DEGREES, (int) Math.round(reader.nextDouble()));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return step;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android.sunshine.app.sync;
+
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+
+/**
+ * Fetches forecasts from OpenWeatherMap, or from any server speaking the same API such as a
+ * local stub used for benchmarks.
+ */
+public class HttpForecastSource implements ForecastSource {
+    public static final String OWM_BASE_URL = "http://api.openweathermap.org/data/2.5/";
+
+    private final String mBaseUrl;
+    private final ForecastHttpClient mHttpClient;
+
+    public HttpForecastSource() {
+        this(OWM_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl The API root, with a trailing slash, e.g. "http://127.0.0.1:8080/data/2.5/".
+     */
+    public HttpForecastSource(String baseUrl) {
+        mBaseUrl = baseUrl;
+        mHttpClient = ForecastHttpClient.getInstance();
+    }
+
+    @Override
+    public String fetchDailyForecast(String locationQuery, int numDays, SyncMetrics metrics)
+            throws IOException {
+        String format = "json";
+        String units = "metric";
+
+        // Construct the URL for the OpenWeatherMap query
+        // Possible parameters are avaiable at OWM's forecast API page, at
+        // http://openweathermap.org/API#forecast
+        final String FORECAST_PATH = "forecast/daily";
+        final String QUERY_PARAM = "q";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String DAYS_PARAM = "cnt";
+        final String APPID_PARAM = "APPID";
+
+        Uri builtUri = Uri.parse(mBaseUrl + FORECAST_PATH).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationQuery)
+                .appendQueryParameter(FORMAT_PARAM, format)
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        return mHttpClient.get(new URL(builtUri.toString()), metrics);
+    }
+
+    @Override
+    public Reader openHourlyForecast(String locationQuery, SyncMetrics metrics)
+            throws IOException {
+        final String FORECAST_PATH = "forecast";
+        final String QUERY_PARAM = "q";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String APPID_PARAM = "APPID";
+
+        Uri builtUri = Uri.parse(mBaseUrl + FORECAST_PATH).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationQuery)
+                .appendQueryParameter(FORMAT_PARAM, "json")
+                .appendQueryParameter(UNITS_PARAM, "metric")
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        return new InputStreamReader(
+                mHttpClient.open(new URL(builtUri.toString()), metrics), "UTF-8");
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.android.sunshine.app.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity buffer that overwrites its oldest entry once full, so the memory it uses stays
+ * constant no matter how long the process lives.
+ */
+class RingBuffer<T> {
+    private final Object[] mEntries;
+    // Index of the slot the next entry will be written to
+    private int mHead = 0;
+    private int mSize = 0;
+
+    RingBuffer(int capacity) {
+        mEntries = new Object[capacity];
+    }
+
+    synchronized void add(T entry) {
+        mEntries[mHead] = entry;
+        mHead = (mHead + 1) % mEntries.length;
+        if (mSize < mEntries.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * @return a copy of the buffered entries, most recent first.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<T> snapshot() {
+        List<T> entries = new ArrayList<T>(mSize);
+        for (int i = 1; i <= mSize; i++) {
+            entries.add((T) mEntries[(mHead - i + mEntries.length) % mEntries.length]);
+        }
+        return entries;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < mEntries.length; i++) {
+            mEntries[i] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+    }
+}
@@ -2,38 +2,40 @@ package com.example.android.sunshine.app.sync;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
-import android.annotation.SuppressLint;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.ForecastSnapshot;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherArtCache;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
 
@@ -41,22 +43,22 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
-    // Interval at which to sync with the weather, in seconds.
+    // Interval at which to sync with the weather, in seconds.  This is the starting point; after
+    // each sync the AdaptiveSyncScheduler stretches or shortens it.
     // 60 seconds (1 minute) * 180 = 3 hours
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
@@ -87,6 +89,18 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
+    // Metrics of the sync currently running.  The framework never runs two syncs on the same
+    // adapter instance at once, so a single field is enough.
+    private SyncMetrics mMetrics;
+
+    // Set once the sync account is known to exist, so later launches skip the AccountManager
+    private static final String SYNC_ACCOUNT_INITIALIZED = "syncAccountInitialized";
+    private static volatile boolean sAccountInitialized;
+    private static final AtomicBoolean sAccountInitializing = new AtomicBoolean();
+
+    private static final ForecastSource DEFAULT_FORECAST_SOURCE = new HttpForecastSource();
+    private static volatile ForecastSource sForecastSource;
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
     }
@@ -95,92 +109,131 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
         String locationQuery = Utility.getPreferredLocation(getContext());
+        mMetrics = new SyncMetrics(locationQuery);
+        try {
+            SyncCircuitBreaker circuitBreaker = new SyncCircuitBreaker(getContext());
+            if (!circuitBreaker.allowRequest(locationQuery)) {
+                // The server failed us recently; don't hit it again until the breaker lets a
+                // probe through, and ask the framework not to retry before then either.
+                long retryAt = circuitBreaker.getRetryAt(locationQuery);
+                Log.d(LOG_TAG, "Server down, backing off until " + retryAt);
+                syncResult.delayUntil = retryAt / 1000;
+                reportLocationStatus(LOCATION_STATUS_SERVER_DOWN);
+                return;
+            }
+            performSync(locationQuery);
+            if (mMetrics.locationStatus == LOCATION_STATUS_SERVER_DOWN) {
+                circuitBreaker.onFailure(locationQuery);
+                syncResult.stats.numIoExceptions++;
+            } else if (mMetrics.locationStatus == LOCATION_STATUS_UNKNOWN) {
+                // Nothing was stored, e.g. the forecast could not be written.  That's no fault
+                // of the server, so the breaker is left as it was.
+                syncResult.stats.numIoExceptions++;
+            } else {
+                // Anything else means the server answered, even if it didn't like the location
+                circuitBreaker.onSuccess(locationQuery);
+            }
+        } finally {
+            mMetrics.finish();
+            SyncMetricsLog.getInstance().add(mMetrics);
+            Log.d(LOG_TAG, mMetrics.toString());
+            mMetrics = null;
+        }
+    }
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
-
-        String format = "json";
-        String units = "metric";
+    private void performSync(String locationQuery) {
         int numDays = 14;
 
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
+            String forecastJsonStr = getForecastSource().fetchDailyForecast(
+                    locationQuery, numDays, mMetrics);
+            if (forecastJsonStr == null) {
                 // Nothing to do.
                 return;
             }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
-
-            if (buffer.length() == 0) {
+            if (forecastJsonStr.length() == 0) {
                 // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                reportLocationStatus(LOCATION_STATUS_SERVER_DOWN);
                 return;
             }
-            forecastJsonStr = buffer.toString();
             getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            if (mMetrics.locationStatus == LOCATION_STATUS_OK) {
+                syncHourlyForecast(locationQuery);
+            }
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            reportLocationStatus(LOCATION_STATUS_SERVER_DOWN);
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            reportLocationStatus(LOCATION_STATUS_SERVER_INVALID);
+        }
+    }
+
+    /**
+     * Fetches the forecast in 3-hour steps and replaces the stored one.  This is extra detail on
+     * top of the daily forecast, so a failure here is logged and doesn't fail the sync.
+     */
+    private void syncHourlyForecast(String locationQuery) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            // The streaming parser needs android.util.JsonReader
+            return;
+        }
+        long locationId = getLocationId(locationQuery);
+        if (locationId == -1) {
+            return;
+        }
+
+        long mark = SyncMetrics.mark();
+        // The exchange gets metrics of its own so it doesn't overwrite the daily fetch's phases
+        SyncMetrics hourlyMetrics = new SyncMetrics(locationQuery);
+        Reader reader = null;
+        try {
+            reader = getForecastSource().openHourlyForecast(locationQuery, hourlyMetrics);
+            if (reader == null) {
+                return;
             }
+            List<ContentValues> steps = HourlyForecastParser.parse(reader, locationId);
+            ContentResolver resolver = getContext().getContentResolver();
+            resolver.bulkInsert(WeatherContract.HourlyEntry.CONTENT_URI,
+                    steps.toArray(new ContentValues[steps.size()]));
+
+            // Steps that have ended are of no further use, for this location or any other
+            long currentStepStart = System.currentTimeMillis() / 1000 - 3 * 60 * 60;
+            resolver.delete(WeatherContract.HourlyEntry.CONTENT_URI,
+                    WeatherContract.HourlyEntry.COLUMN_TIME + " < ?",
+                    new String[] {Long.toString(currentStepStart)});
+            Log.d(LOG_TAG, "Hourly sync complete. " + steps.size() + " Inserted");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error fetching hourly forecast", e);
+        } finally {
             if (reader != null) {
                 try {
                     reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
+                } catch (IOException e) {
+                    // Nothing left to read
                 }
             }
+            mMetrics.bytesReceived += hourlyMetrics.bytesReceived;
+            mMetrics.bytesDecoded += hourlyMetrics.bytesDecoded;
+            mMetrics.hourlyMillis = SyncMetrics.since(mark);
         }
-        return;
+    }
+
+    /**
+     * Replaces where forecasts are fetched from, for all sync adapter instances in the process.
+     * Pass null to go back to the live OpenWeatherMap API.
+     */
+    @VisibleForTesting
+    public static void setForecastSource(ForecastSource forecastSource) {
+        sForecastSource = forecastSource;
+    }
+
+    private static ForecastSource getForecastSource() {
+        ForecastSource forecastSource = sForecastSource;
+        return forecastSource != null ? forecastSource : DEFAULT_FORECAST_SOURCE;
     }
 
     /**
@@ -229,6 +282,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         final String OWM_MESSAGE_CODE = "cod";
 
         try {
+            long mark = SyncMetrics.mark();
             JSONObject forecastJson = new JSONObject(forecastJsonStr);
 
             // do we have an error?
@@ -239,10 +293,10 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     case HttpURLConnection.HTTP_OK:
                         break;
                     case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
+                        reportLocationStatus(LOCATION_STATUS_INVALID);
                         return;
                     default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                        reportLocationStatus(LOCATION_STATUS_SERVER_DOWN);
                         return;
                 }
             }
@@ -256,8 +310,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
             double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
 
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
             // Insert the new weather information into the database
             Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
 
@@ -318,7 +370,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
                 ContentValues weatherValues = new ContentValues();
 
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
@@ -331,33 +382,121 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
                 cVVector.add(weatherValues);
             }
+            mMetrics.parseMillis = SyncMetrics.since(mark);
 
             int inserted = 0;
             // add to database
             if ( cVVector.size() > 0 ) {
+                mark = SyncMetrics.mark();
                 ContentValues[] cvArray = new ContentValues[cVVector.size()];
                 cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+                boolean written = writeForecast(locationSetting, cityName, cityLatitude,
+                        cityLongitude, cvArray, dayTime.setJulianDay(julianStartDay-1));
+                mMetrics.dbMillis = SyncMetrics.since(mark);
+                if (!written) {
+                    // Nothing new was stored; the server answered, but the sync still failed
+                    reportLocationStatus(LOCATION_STATUS_UNKNOWN);
+                    return;
+                }
 
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
+                new AdaptiveSyncScheduler(getContext()).onSyncCompleted(cvArray);
+                // What the forecast list shows first on its next launch
+                ForecastSnapshot.write(getContext(), locationSetting);
 
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
+                dispatchDataUpdated();
             }
             Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+            reportLocationStatus(LOCATION_STATUS_OK);
 
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            reportLocationStatus(LOCATION_STATUS_SERVER_INVALID);
         }
     }
 
+    /**
+     * Stores the new forecast, adding the location first if it is new, and deletes the days up
+     * to {@code deleteUpTo}.  Everything goes to the provider as one batch of operations, which
+     * it applies in a single transaction and announces with one change notification per table.
+     *
+     * @param locationSetting The location string used to request updates from the server.
+     * @param cityName A human-readable city name, e.g "Mountain View"
+     * @param lat the latitude of the city
+     * @param lon the longitude of the city
+     * @param cvArray The forecast rows, without their location key.
+     * @param deleteUpTo Date up to which (inclusive) old rows are deleted.
+     * @return whether the batch was applied.
+     */
+    private boolean writeForecast(String locationSetting, String cityName, double lat, double lon,
+                                  ContentValues[] cvArray, long deleteUpTo) {
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(cvArray.length + 2);
+
+        // Weather rows point at the location either by id, or, when the location is inserted by
+        // this same batch, by a back reference to the result of that insert.
+        long locationId = getLocationId(locationSetting);
+        int locationInsertIndex = -1;
+        if (locationId == -1) {
+            ContentValues locationValues = new ContentValues();
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+            locationInsertIndex = operations.size();
+            operations.add(ContentProviderOperation
+                    .newInsert(WeatherContract.LocationEntry.CONTENT_URI)
+                    .withValues(locationValues)
+                    .build());
+        }
+
+        for (ContentValues weatherValues : cvArray) {
+            ContentProviderOperation.Builder builder = ContentProviderOperation
+                    .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withValues(weatherValues);
+            if (locationInsertIndex != -1) {
+                builder.withValueBackReference(
+                        WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationInsertIndex);
+            } else {
+                builder.withValue(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            }
+            operations.add(builder.build());
+        }
+
+        // delete old data so we don't build up an endless history; it moves to the archive
+        operations.add(ContentProviderOperation
+                .newDelete(WeatherContract.WeatherEntry.buildArchivingUri())
+                .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[] {Long.toString(deleteUpTo)})
+                .build());
+
+        try {
+            getContext().getContentResolver()
+                    .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            return true;
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+            Log.e(LOG_TAG, "Error writing forecast", e);
+            return false;
+        }
+    }
+
+    /**
+     * Tells every consumer outside of the content observers, once, that a sync brought new data.
+     */
+    private void dispatchDataUpdated() {
+        long mark = SyncMetrics.mark();
+        updateWidgets();
+        mMetrics.widgetsMillis = SyncMetrics.since(mark);
+
+        mark = SyncMetrics.mark();
+        updateMuzei();
+        mMetrics.muzeiMillis = SyncMetrics.since(mark);
+
+        mark = SyncMetrics.mark();
+        notifyWeather();
+        mMetrics.notificationMillis = SyncMetrics.since(mark);
+    }
+
     private void updateWidgets() {
         Context context = getContext();
         // Setting the package ensures that only components in our app will receive the broadcast
@@ -399,79 +538,28 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
 
                 if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
-
-                    int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
-                    Resources resources = context.getResources();
-                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
-
-                    // On Honeycomb and higher devices, we can retrieve the size of the large icon
-                    // Prior to that, we use a fixed size
-                    @SuppressLint("InlinedApi")
-                    int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-                    @SuppressLint("InlinedApi")
-                    int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
-                        largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
+                    final int weatherId = cursor.getInt(INDEX_WEATHER_ID);
+                    final double high = cursor.getDouble(INDEX_MAX_TEMP);
+                    final double low = cursor.getDouble(INDEX_MIN_TEMP);
+                    final String desc = cursor.getString(INDEX_SHORT_DESC);
+
+                    // The large icon comes pre-scaled from memory or disk.  If it isn't there
+                    // yet, notify without it rather than wait for the art, and add it once it's
+                    // ready.
+                    WeatherArtCache artCache = WeatherArtCache.getInstance(context);
+                    Bitmap largeIcon = artCache.getCached(weatherId, WeatherArtCache.SIZE_NOTIFICATION);
+                    showWeatherNotification(weatherId, high, low, desc, largeIcon, false);
+                    if (largeIcon == null) {
+                        artCache.load(weatherId, WeatherArtCache.SIZE_NOTIFICATION,
+                                new WeatherArtCache.Callback() {
+                                    @Override
+                                    public void onArtLoaded(Bitmap art) {
+                                        if (art != null) {
+                                            showWeatherNotification(weatherId, high, low, desc, art, true);
+                                        }
+                                    }
+                                });
                     }
-                    String title = context.getString(R.string.app_name);
-
-                    // Define the text of the forecast.
-                    String contentText = String.format(context.getString(R.string.format_notification),
-                            desc,
-                            Utility.formatTemperature(context, high),
-                            Utility.formatTemperature(context, low));
-
-                    // NotificationCompatBuilder is a very convenient way to build backward-compatible
-                    // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
-                            new NotificationCompat.Builder(getContext())
-                                    .setColor(resources.getColor(R.color.primary_light))
-                                    .setSmallIcon(iconId)
-                                    .setLargeIcon(largeIcon)
-                                    .setContentTitle(title)
-                                    .setContentText(contentText);
-
-                    // Make something interesting happen when the user clicks on the notification.
-                    // In this case, opening the app is sufficient.
-                    Intent resultIntent = new Intent(context, MainActivity.class);
-
-                    // The stack builder object will contain an artificial back stack for the
-                    // started Activity.
-                    // This ensures that navigating backward from the Activity leads out of
-                    // your application to the Home screen.
-                    TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
-                    stackBuilder.addNextIntent(resultIntent);
-                    PendingIntent resultPendingIntent =
-                            stackBuilder.getPendingIntent(
-                                    0,
-                                    PendingIntent.FLAG_UPDATE_CURRENT
-                            );
-                    mBuilder.setContentIntent(resultPendingIntent);
-
-                    NotificationManager mNotificationManager =
-                            (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
-                    // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
-                    mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
 
                     //refreshing last sync
                     SharedPreferences.Editor editor = prefs.edit();
@@ -484,52 +572,81 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Helper method to handle insertion of a new location in the weather database.
+     * @param largeIcon The notification's large icon, or null for none.
+     * @param update Whether this only adds the large icon to the notification already shown, in
+     *               which case it doesn't alert again.
+     */
+    private void showWeatherNotification(int weatherId, double high, double low, String desc,
+                                         Bitmap largeIcon, boolean update) {
+        Context context = getContext();
+        int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+        Resources resources = context.getResources();
+        String title = context.getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(context.getString(R.string.format_notification),
+                desc,
+                Utility.formatTemperature(context, high),
+                Utility.formatTemperature(context, low));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder mBuilder =
+                new NotificationCompat.Builder(getContext())
+                        .setColor(resources.getColor(R.color.primary_light))
+                        .setSmallIcon(iconId)
+                        .setLargeIcon(largeIcon)
+                        .setContentTitle(title)
+                        .setContentText(contentText)
+                        .setOnlyAlertOnce(update);
+
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(context, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(
+                        0,
+                        PendingIntent.FLAG_UPDATE_CURRENT
+                );
+        mBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager mNotificationManager =
+                (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+    }
+
+    /**
+     * Helper method to look up a location in the weather database.
      *
      * @param locationSetting The location string used to request updates from the server.
-     * @param cityName A human-readable city name, e.g "Mountain View"
-     * @param lat the latitude of the city
-     * @param lon the longitude of the city
-     * @return the row ID of the added location.
+     * @return the row ID of the location, or -1 if it isn't in the database yet.
      */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
+    long getLocationId(String locationSetting) {
+        long locationId = -1;
 
         // First, check if the location with this city name exists in the db
+        // (answered from the provider's in-memory location id cache)
         Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
+                WeatherContract.LocationEntry.buildLocationSettingUri(locationSetting),
                 new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
+                null,
+                null,
                 null);
 
         if (locationCursor.moveToFirst()) {
             int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
             locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
         }
 
         locationCursor.close();
-        // Wait, that worked?  Yes!
         return locationId;
     }
 
@@ -608,6 +725,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
          * Since we've created an account
          */
         SunshineSyncAdapter.configurePeriodicSync(context, SYNC_INTERVAL, SYNC_FLEXTIME);
+        // A recreated account starts from the default interval, whatever was last adapted to
+        AdaptiveSyncScheduler.reset(context);
 
         /*
          * Without calling setSyncAutomatically, our periodic sync will not be enabled.
@@ -620,8 +739,48 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         syncImmediately(context);
     }
 
+    /**
+     * Makes sure the sync account exists, creating it and scheduling syncs the first time.  The
+     * AccountManager calls that takes run once, on a background thread; once they succeeded, a
+     * flag in the shared preferences lets every later call return without any.
+     */
     public static void initializeSyncAdapter(Context context) {
-        getSyncAccount(context);
+        if (sAccountInitialized) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        if (prefs.getBoolean(SYNC_ACCOUNT_INITIALIZED, false)) {
+            sAccountInitialized = true;
+            return;
+        }
+        if (!sAccountInitializing.compareAndSet(false, true)) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (getSyncAccount(appContext) != null) {
+                        prefs.edit().putBoolean(SYNC_ACCOUNT_INITIALIZED, true).apply();
+                        sAccountInitialized = true;
+                    }
+                } finally {
+                    // A failed attempt is tried again on the next call
+                    sAccountInitializing.set(false);
+                }
+            }
+        }, "SyncAccountInitializer").start();
+    }
+
+    /**
+     * Records the outcome of the running sync and persists it as the location status.
+     */
+    private void reportLocationStatus(@LocationStatus int locationStatus) {
+        if (mMetrics != null) {
+            mMetrics.locationStatus = locationStatus;
+        }
+        setLocationStatus(getContext(), locationStatus);
     }
 
     /**
@@ -2,14 +2,13 @@ package com.example.android.sunshine.app.sync;
 
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
-import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherArtCache;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.wearable.MessageEvent;
@@ -117,16 +116,16 @@ public class SunshineWearableService extends WearableListenerService implements
             return null;
         }
 
-        Bitmap artResBitmap = BitmapFactory.decodeResource(getResources(), Utility.getArtResourceForWeatherCondition(forecastData.getInt(0)));
+        // Already scaled to the wearable's icon size
+        Bitmap artResBitmap = WeatherArtCache.getInstance(this)
+                .get(forecastData.getInt(0), WeatherArtCache.SIZE_WEARABLE);
         String maxTemp = Utility.formatTemperature(this, forecastData.getDouble(1));
         String minTemp = Utility.formatTemperature(this, forecastData.getDouble(2));
 
         forecastData.close();
 
-        artResBitmap = Bitmap.createScaledBitmap(artResBitmap,
-                (int) getResources().getDimension(R.dimen.wearable_icon_size),
-                (int) getResources().getDimension(R.dimen.wearable_icon_size),
-                false);
+        if (artResBitmap == null)
+            return null;
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         artResBitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
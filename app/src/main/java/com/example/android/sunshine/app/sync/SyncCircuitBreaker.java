@@ -0,0 +1,159 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.IntDef;
+import android.util.Log;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Random;
+
+/**
+ * Keeps syncs from hammering a forecast server that is down.  Each location has its own breaker:
+ * <ul>
+ *     <li>CLOSED: requests go through.  After {@link #FAILURE_THRESHOLD} failures in a row the
+ *     breaker opens.</li>
+ *     <li>OPEN: requests are refused until a jittered, exponentially growing delay has passed,
+ *     then the breaker goes half-open.</li>
+ *     <li>HALF_OPEN: a single probe request is let through.  Success closes the breaker, failure
+ *     opens it again with a longer delay.</li>
+ * </ul>
+ * State lives in its own SharedPreferences file so it survives process death.
+ */
+public class SyncCircuitBreaker {
+    private static final String LOG_TAG = SyncCircuitBreaker.class.getSimpleName();
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({STATE_CLOSED, STATE_OPEN, STATE_HALF_OPEN})
+    public @interface State {}
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    public static final int FAILURE_THRESHOLD = 2;
+    public static final long BASE_DELAY_MILLIS = 60 * 1000;
+    public static final long MAX_DELAY_MILLIS = 6 * 60 * 60 * 1000;
+    // A probe that never reported back (e.g. the process died) stops blocking others after this
+    public static final long PROBE_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+    static final String PREFS_NAME = "sync_circuit_breaker";
+    private static final String KEY_STATE = ".state";
+    private static final String KEY_FAILURES = ".failures";
+    private static final String KEY_RETRY_AT = ".retry_at";
+    private static final String KEY_PROBE_STARTED = ".probe_started";
+
+    /**
+     * Source of time, replaced by a fake one in tests.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final SharedPreferences mPrefs;
+    private final Clock mClock;
+    private final Random mRandom;
+
+    public SyncCircuitBreaker(Context context) {
+        this(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), SYSTEM_CLOCK,
+                new Random());
+    }
+
+    SyncCircuitBreaker(SharedPreferences prefs, Clock clock, Random random) {
+        mPrefs = prefs;
+        mClock = clock;
+        mRandom = random;
+    }
+
+    /**
+     * Asks whether a sync for this location may hit the server now.  When this returns true for
+     * a half-open breaker, the caller holds the probe and must report back through
+     * {@link #onSuccess(String)} or {@link #onFailure(String)}.
+     */
+    public synchronized boolean allowRequest(String location) {
+        long now = mClock.currentTimeMillis();
+        switch (getState(location)) {
+            case STATE_OPEN:
+                if (now < getRetryAt(location)) {
+                    return false;
+                }
+                Log.d(LOG_TAG, location + ": half-open, probing");
+                mPrefs.edit()
+                        .putInt(location + KEY_STATE, STATE_HALF_OPEN)
+                        .putLong(location + KEY_PROBE_STARTED, now)
+                        .commit();
+                return true;
+            case STATE_HALF_OPEN:
+                if (now - mPrefs.getLong(location + KEY_PROBE_STARTED, 0) < PROBE_TIMEOUT_MILLIS) {
+                    // Someone else is already probing
+                    return false;
+                }
+                mPrefs.edit().putLong(location + KEY_PROBE_STARTED, now).commit();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess(String location) {
+        if (getState(location) != STATE_CLOSED || getFailures(location) != 0) {
+            Log.d(LOG_TAG, location + ": closed");
+        }
+        mPrefs.edit()
+                .remove(location + KEY_STATE)
+                .remove(location + KEY_FAILURES)
+                .remove(location + KEY_RETRY_AT)
+                .remove(location + KEY_PROBE_STARTED)
+                .commit();
+    }
+
+    public synchronized void onFailure(String location) {
+        int failures = getFailures(location) + 1;
+        SharedPreferences.Editor editor = mPrefs.edit().putInt(location + KEY_FAILURES, failures);
+        if (getState(location) == STATE_HALF_OPEN || failures >= FAILURE_THRESHOLD) {
+            long delay = computeDelay(failures);
+            editor.putInt(location + KEY_STATE, STATE_OPEN)
+                    .putLong(location + KEY_RETRY_AT, mClock.currentTimeMillis() + delay)
+                    .remove(location + KEY_PROBE_STARTED);
+            Log.d(LOG_TAG, location + ": open for " + delay + "ms after " + failures + " failures");
+        }
+        editor.commit();
+    }
+
+    /**
+     * Exponential delay with "equal jitter": half of it fixed, the other half random, so that
+     * retries from many devices don't line up.
+     */
+    long computeDelay(int failures) {
+        int exponent = Math.max(0, failures - FAILURE_THRESHOLD);
+        long delay = exponent >= 30 ? MAX_DELAY_MILLIS
+                : Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << exponent);
+        long half = delay / 2;
+        return half + (long) (mRandom.nextDouble() * half);
+    }
+
+    @SuppressWarnings("ResourceType")
+    public synchronized @State int getState(String location) {
+        return mPrefs.getInt(location + KEY_STATE, STATE_CLOSED);
+    }
+
+    public synchronized int getFailures(String location) {
+        return mPrefs.getInt(location + KEY_FAILURES, 0);
+    }
+
+    /**
+     * @return when an open breaker will let a probe through, in milliseconds since the epoch,
+     * or 0 if it isn't open.
+     */
+    public synchronized long getRetryAt(String location) {
+        return mPrefs.getLong(location + KEY_RETRY_AT, 0);
+    }
+}
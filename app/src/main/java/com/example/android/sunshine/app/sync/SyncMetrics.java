@@ -0,0 +1,111 @@
+package com.example.android.sunshine.app.sync;
+
+import android.os.SystemClock;
+
+import com.example.android.sunshine.app.data.WeatherContract.SyncMetricsEntry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Timings and counters collected over a single run of
+ * {@link SunshineSyncAdapter#onPerformSync}.  Every phase is measured in milliseconds with
+ * {@link SystemClock#elapsedRealtime()}; a phase that did not run stays at -1.
+ */
+public class SyncMetrics {
+    private final long mStartTime;
+    private final long mStartElapsed;
+    private final String mLocation;
+
+    long dnsMillis = -1;
+    long connectMillis = -1;
+    long ttfbMillis = -1;
+    long downloadMillis = -1;
+    long fetchMillis = -1;
+    long bytesReceived = 0;
+    long bytesDecoded = 0;
+    long parseMillis = -1;
+    long dbMillis = -1;
+    long widgetsMillis = -1;
+    long muzeiMillis = -1;
+    long notificationMillis = -1;
+    long hourlyMillis = -1;
+    long totalMillis = -1;
+    @SunshineSyncAdapter.LocationStatus int locationStatus = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+
+    public SyncMetrics(String location) {
+        mStartTime = System.currentTimeMillis();
+        mStartElapsed = SystemClock.elapsedRealtime();
+        mLocation = location;
+    }
+
+    /**
+     * @return a mark to later pass to {@link #since(long)}
+     */
+    static long mark() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    static long since(long mark) {
+        return SystemClock.elapsedRealtime() - mark;
+    }
+
+    /**
+     * Closes the measurement, recording the total wall time of the sync.
+     */
+    void finish() {
+        totalMillis = since(mStartElapsed);
+    }
+
+    public long getStartTime() { return mStartTime; }
+    public String getLocation() { return mLocation; }
+    public long getDnsMillis() { return dnsMillis; }
+    public long getConnectMillis() { return connectMillis; }
+    public long getTtfbMillis() { return ttfbMillis; }
+    public long getDownloadMillis() { return downloadMillis; }
+    public long getFetchMillis() { return fetchMillis; }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getBytesDecoded() { return bytesDecoded; }
+    public long getParseMillis() { return parseMillis; }
+    public long getDbMillis() { return dbMillis; }
+    public long getWidgetsMillis() { return widgetsMillis; }
+    public long getMuzeiMillis() { return muzeiMillis; }
+    public long getNotificationMillis() { return notificationMillis; }
+    public long getHourlyMillis() { return hourlyMillis; }
+    public long getTotalMillis() { return totalMillis; }
+    public @SunshineSyncAdapter.LocationStatus int getLocationStatus() { return locationStatus; }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(SyncMetricsEntry.COLUMN_START_TIME, mStartTime);
+        json.put(SyncMetricsEntry.COLUMN_LOCATION, mLocation);
+        json.put(SyncMetricsEntry.COLUMN_DNS, dnsMillis);
+        json.put(SyncMetricsEntry.COLUMN_CONNECT, connectMillis);
+        json.put(SyncMetricsEntry.COLUMN_TTFB, ttfbMillis);
+        json.put(SyncMetricsEntry.COLUMN_DOWNLOAD, downloadMillis);
+        json.put(SyncMetricsEntry.COLUMN_FETCH, fetchMillis);
+        json.put(SyncMetricsEntry.COLUMN_BYTES, bytesReceived);
+        json.put(SyncMetricsEntry.COLUMN_BYTES_DECODED, bytesDecoded);
+        json.put(SyncMetricsEntry.COLUMN_PARSE, parseMillis);
+        json.put(SyncMetricsEntry.COLUMN_DB, dbMillis);
+        json.put(SyncMetricsEntry.COLUMN_WIDGETS, widgetsMillis);
+        json.put(SyncMetricsEntry.COLUMN_MUZEI, muzeiMillis);
+        json.put(SyncMetricsEntry.COLUMN_NOTIFICATION, notificationMillis);
+        json.put(SyncMetricsEntry.COLUMN_HOURLY, hourlyMillis);
+        json.put(SyncMetricsEntry.COLUMN_TOTAL, totalMillis);
+        json.put(SyncMetricsEntry.COLUMN_STATUS, locationStatus);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncMetrics{location=" + mLocation
+                + ", dns=" + dnsMillis + "ms, connect=" + connectMillis
+                + "ms, ttfb=" + ttfbMillis + "ms, download=" + downloadMillis
+                + "ms, fetch=" + fetchMillis + "ms, bytes=" + bytesReceived
+                + ", decoded=" + bytesDecoded + ", parse=" + parseMillis
+                + "ms, db=" + dbMillis + "ms, widgets=" + widgetsMillis
+                + "ms, muzei=" + muzeiMillis + "ms, notification=" + notificationMillis
+                + "ms, hourly=" + hourlyMillis + "ms, total=" + totalMillis + "ms, status=" + locationStatus + "}";
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.sunshine.app.sync;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.List;
+
+/**
+ * Process-wide log of the metrics of the most recent syncs, kept in a {@link RingBuffer}.
+ */
+public class SyncMetricsLog {
+    public static final int CAPACITY = 32;
+
+    private static final SyncMetricsLog sInstance = new SyncMetricsLog();
+
+    private final RingBuffer<SyncMetrics> mEntries = new RingBuffer<SyncMetrics>(CAPACITY);
+
+    public static SyncMetricsLog getInstance() {
+        return sInstance;
+    }
+
+    public void add(SyncMetrics metrics) {
+        mEntries.add(metrics);
+    }
+
+    /**
+     * @return a copy of the buffered entries, most recent first.
+     */
+    public List<SyncMetrics> snapshot() {
+        return mEntries.snapshot();
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * @return the buffered entries as a JSON array, most recent first.
+     */
+    public String exportJson() {
+        JSONArray array = new JSONArray();
+        try {
+            for (SyncMetrics metrics : snapshot()) {
+                array.put(metrics.toJson());
+            }
+        } catch (JSONException e) {
+            // Only numbers and strings go in, so this can't happen
+            throw new IllegalStateException(e);
+        }
+        return array.toString();
+    }
+}
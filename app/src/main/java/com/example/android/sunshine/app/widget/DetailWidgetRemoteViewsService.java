@@ -1,31 +1,34 @@
 package com.example.android.sunshine.app.widget;
 
 import android.annotation.TargetApi;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
-import java.util.concurrent.ExecutionException;
-
 /**
  * RemoteViewsService controlling the data being shown in the scrollable weather detail widget
  */
 @TargetApi(Build.VERSION_CODES.HONEYCOMB)
 public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public final String LOG_TAG = DetailWidgetRemoteViewsService.class.getSimpleName();
+    // A forecast sync fetches two weeks; the list never needs more than that
+    private static final int MAX_ROWS = 14;
+    // Most bytes of icon bitmaps a widget holds and sends to the launcher, about four distinct
+    // ARGB_8888 icons at xxxhdpi, or twice as many RGB_565 ones.  Rows past it show the bundled
+    // icons.
+    private static final int ICON_BUDGET_BYTES = 400 * 1024;
+
     private static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
             WeatherContract.WeatherEntry.COLUMN_DATE,
@@ -42,10 +45,41 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     static final int INDEX_WEATHER_MAX_TEMP = 4;
     static final int INDEX_WEATHER_MIN_TEMP = 5;
 
+    /**
+     * Everything a list item shows, worked out once per data set change.
+     */
+    private static final class Row {
+        final long id;
+        final String formattedDate;
+        final String description;
+        final String formattedMaxTemperature;
+        final String formattedMinTemperature;
+        final int iconResourceId;
+        // Already scaled to the list icon size, and shared by rows with the same art; null to
+        // show iconResourceId
+        final Bitmap icon;
+        final Uri weatherUri;
+
+        Row(long id, String formattedDate, String description, String formattedMaxTemperature,
+            String formattedMinTemperature, int iconResourceId, Bitmap icon, Uri weatherUri) {
+            this.id = id;
+            this.formattedDate = formattedDate;
+            this.description = description;
+            this.formattedMaxTemperature = formattedMaxTemperature;
+            this.formattedMinTemperature = formattedMinTemperature;
+            this.iconResourceId = iconResourceId;
+            this.icon = icon;
+            this.weatherUri = weatherUri;
+        }
+    }
+
+    private static final Row[] NO_ROWS = new Row[0];
+
     @Override
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
-            private Cursor data = null;
+            // Replaced as a whole on each data set change, never modified
+            private volatile Row[] rows = NO_ROWS;
 
             @Override
             public void onCreate() {
@@ -54,92 +88,103 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
 
             @Override
             public void onDataSetChanged() {
-                if (data != null) {
-                    data.close();
-                }
                 // This method is called by the app hosting the widget (e.g., the launcher)
                 // However, our ContentProvider is not exported so it doesn't have access to the
                 // data. Therefore we need to clear (and finally restore) the calling identity so
                 // that calls use our process and permission
                 final long identityToken = Binder.clearCallingIdentity();
-                String location = Utility.getPreferredLocation(DetailWidgetRemoteViewsService.this);
+                try {
+                    rows = loadRows();
+                } finally {
+                    Binder.restoreCallingIdentity(identityToken);
+                }
+            }
+
+            /**
+             * Reads the forecast and builds every row in one pass, so that getViewAt has nothing
+             * left to query, format or load.
+             */
+            private Row[] loadRows() {
+                Context context = DetailWidgetRemoteViewsService.this;
+                String location = Utility.getPreferredLocation(context);
                 Uri weatherForLocationUri = WeatherContract.WeatherEntry
-                        .buildWeatherLocationWithStartDate(location, System.currentTimeMillis());
-                data = getContentResolver().query(weatherForLocationUri,
+                        .buildWeatherLocationFirstPage(location, System.currentTimeMillis(),
+                                MAX_ROWS);
+                Cursor data = getContentResolver().query(weatherForLocationUri,
                         FORECAST_COLUMNS,
                         null,
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-                Binder.restoreCallingIdentity(identityToken);
+                if (data == null) {
+                    return NO_ROWS;
+                }
+
+                WidgetIconLoader icons = Utility.usingLocalGraphics(context) ? null
+                        : new WidgetIconLoader(context, ICON_BUDGET_BYTES);
+                Row[] loaded = new Row[data.getCount()];
+                try {
+                    while (data.moveToNext()) {
+                        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
+                        int weatherArtResourceId =
+                                Utility.getIconResourceForWeatherCondition(weatherId);
+                        Bitmap weatherArtImage = icons != null ? icons.get(weatherId) : null;
+                        long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
+                        loaded[data.getPosition()] = new Row(
+                                data.getLong(INDEX_WEATHER_ID),
+                                Utility.getFriendlyDayString(context, dateInMillis, false),
+                                data.getString(INDEX_WEATHER_DESC),
+                                Utility.formatTemperature(context,
+                                        data.getDouble(INDEX_WEATHER_MAX_TEMP)),
+                                Utility.formatTemperature(context,
+                                        data.getDouble(INDEX_WEATHER_MIN_TEMP)),
+                                weatherArtResourceId,
+                                weatherArtImage,
+                                WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                                        location, dateInMillis));
+                    }
+                } finally {
+                    data.close();
+                }
+                if (icons != null) {
+                    icons.logStats();
+                }
+                return loaded;
             }
 
             @Override
             public void onDestroy() {
-                if (data != null) {
-                    data.close();
-                    data = null;
-                }
+                rows = NO_ROWS;
             }
 
             @Override
             public int getCount() {
-                return data == null ? 0 : data.getCount();
+                return rows.length;
             }
 
             @Override
             public RemoteViews getViewAt(int position) {
-                if (position == AdapterView.INVALID_POSITION ||
-                        data == null || !data.moveToPosition(position)) {
+                Row[] rows = this.rows;
+                if (position == AdapterView.INVALID_POSITION || position >= rows.length) {
                     return null;
                 }
+                Row row = rows[position];
                 RemoteViews views = new RemoteViews(getPackageName(),
                         R.layout.widget_detail_list_item);
-                int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
-                int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
-                Bitmap weatherArtImage = null;
-                if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
-                    String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
-                            DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
-                }
-                String description = data.getString(INDEX_WEATHER_DESC);
-                long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
-                String formattedDate = Utility.getFriendlyDayString(
-                        DetailWidgetRemoteViewsService.this, dateInMillis, false);
-                double maxTemp = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-                double minTemp = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-                String formattedMaxTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, maxTemp);
-                String formattedMinTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, minTemp);
-                if (weatherArtImage != null) {
-                    views.setImageViewBitmap(R.id.widget_icon, weatherArtImage);
+                if (row.icon != null) {
+                    views.setImageViewBitmap(R.id.widget_icon, row.icon);
                 } else {
-                    views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
+                    views.setImageViewResource(R.id.widget_icon, row.iconResourceId);
                 }
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                    setRemoteContentDescription(views, description);
+                    setRemoteContentDescription(views, row.description);
                 }
-                views.setTextViewText(R.id.widget_date, formattedDate);
-                views.setTextViewText(R.id.widget_description, description);
-                views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-                views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+                views.setTextViewText(R.id.widget_date, row.formattedDate);
+                views.setTextViewText(R.id.widget_description, row.description);
+                views.setTextViewText(R.id.widget_high_temperature, row.formattedMaxTemperature);
+                views.setTextViewText(R.id.widget_low_temperature, row.formattedMinTemperature);
 
                 final Intent fillInIntent = new Intent();
-                String locationSetting =
-                        Utility.getPreferredLocation(DetailWidgetRemoteViewsService.this);
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
-                        locationSetting,
-                        dateInMillis);
-                fillInIntent.setData(weatherUri);
+                fillInIntent.setData(row.weatherUri);
                 views.setOnClickFillInIntent(R.id.widget_list_item, fillInIntent);
                 return views;
             }
@@ -161,8 +206,9 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
 
             @Override
             public long getItemId(int position) {
-                if (data.moveToPosition(position))
-                    return data.getLong(INDEX_WEATHER_ID);
+                Row[] rows = this.rows;
+                if (position >= 0 && position < rows.length)
+                    return rows[position].id;
                 return position;
             }
 
@@ -26,6 +26,8 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
@@ -34,10 +36,21 @@ import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * IntentService which handles updating all Today widgets with the latest data
  */
 public class TodayWidgetIntentService extends IntentService {
+    private static final String LOG_TAG = TodayWidgetIntentService.class.getSimpleName();
+
+    // Boolean extra: update every widget, even those already showing the current forecast
+    static final String EXTRA_FORCE_UPDATE = "force_update";
+
+    private static final WidgetRenderCache sRenderCache = new WidgetRenderCache();
+
     private static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
@@ -63,8 +76,9 @@ public class TodayWidgetIntentService extends IntentService {
 
         // Get today's data from the ContentProvider
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
+        // Only today is shown, so ask for a single row
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationFirstPage(
+                location, System.currentTimeMillis(), 1);
         Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
                 null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
         if (data == null) {
@@ -85,42 +99,86 @@ public class TodayWidgetIntentService extends IntentService {
         String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
         data.close();
 
-        // Perform this loop procedure for each Today widget
+        // Everything the views are built from.  The key is the content itself rather than a hash
+        // of it, so two different forecasts can never be taken for the same one.
+        String content = weatherId + "|" + description + "|" + formattedMaxTemperature + "|"
+                + formattedMinTemperature + "|" + Utility.isMetric(this) + "|" + Locale.getDefault();
+        boolean force = intent != null && intent.getBooleanExtra(EXTRA_FORCE_UPDATE, false);
+        sRenderCache.retain(appWidgetIds);
+
+        // Widgets that share a layout get the same views, in a single update
+        SparseArray<List<Integer>> widgetsByLayout = new SparseArray<List<Integer>>();
         for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
-            if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
-            } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
-            } else {
-                layoutId = R.layout.widget_today_small;
+            int layoutId = getLayoutId(appWidgetManager, appWidgetId);
+            if (!force && sRenderCache.isCurrent(appWidgetId, layoutId + "|" + content)) {
+                sRenderCache.countSkipped();
+                continue;
+            }
+            List<Integer> widgets = widgetsByLayout.get(layoutId);
+            if (widgets == null) {
+                widgets = new ArrayList<Integer>();
+                widgetsByLayout.put(layoutId, widgets);
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+            widgets.add(appWidgetId);
+        }
+
+        int updated = 0;
+        for (int i = 0; i < widgetsByLayout.size(); i++) {
+            int layoutId = widgetsByLayout.keyAt(i);
+            List<Integer> widgets = widgetsByLayout.valueAt(i);
+            RemoteViews views = buildViews(layoutId, weatherArtResourceId, description,
+                    formattedMaxTemperature, formattedMinTemperature);
 
-            // Add the data to the RemoteViews
-            views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
-            // Content Descriptions for RemoteViews were only added in ICS MR1
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                setRemoteContentDescription(views, description);
+            int[] ids = new int[widgets.size()];
+            for (int j = 0; j < ids.length; j++) {
+                ids[j] = widgets.get(j);
+                sRenderCache.put(ids[j], layoutId + "|" + content);
             }
-            views.setTextViewText(R.id.widget_description, description);
-            views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-            views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+            // Tell the AppWidgetManager to perform an update on these app widgets
+            appWidgetManager.updateAppWidget(ids, views);
+            updated += ids.length;
+        }
 
-            // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
-            views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+        Log.d(LOG_TAG, "Updated " + updated + " of " + appWidgetIds.length + " Today widgets in "
+                + widgetsByLayout.size() + " calls; " + sRenderCache.getSkipped()
+                + " unchanged widget updates skipped since start");
+    }
 
-            // Tell the AppWidgetManager to perform an update on the current app widget
-            appWidgetManager.updateAppWidget(appWidgetId, views);
+    private int getLayoutId(AppWidgetManager appWidgetManager, int appWidgetId) {
+        // Find the correct layout based on the widget's width
+        int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        if (widgetWidth >= largeWidth) {
+            return R.layout.widget_today_large;
+        } else if (widgetWidth >= defaultWidth) {
+            return R.layout.widget_today;
+        } else {
+            return R.layout.widget_today_small;
         }
     }
 
+    private RemoteViews buildViews(int layoutId, int weatherArtResourceId, String description,
+                                   String formattedMaxTemperature, String formattedMinTemperature) {
+        RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+
+        // Add the data to the RemoteViews
+        views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
+        // Content Descriptions for RemoteViews were only added in ICS MR1
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+            setRemoteContentDescription(views, description);
+        }
+        views.setTextViewText(R.id.widget_description, description);
+        views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
+        views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+
+        // Create an Intent to launch MainActivity
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+        views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+        return views;
+    }
+
     private int getWidgetWidth(AppWidgetManager appWidgetManager, int appWidgetId) {
         // Prior to Jelly Bean, widgets were always their default size
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
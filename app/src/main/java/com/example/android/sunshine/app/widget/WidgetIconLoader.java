@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherArtCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the art pack icons of one widget's rows.
+ * <ul>
+ *     <li>Icons come from {@link WeatherArtCache} at the list size, so they are shared with the
+ *     forecast list and only decoded when no tier has them yet.</li>
+ *     <li>Rows with the same art get the same Bitmap instance, so it's decoded and held once.</li>
+ *     <li>The bitmaps of a widget never take more than a byte budget.  Past it, and for any icon
+ *     that fails to load, rows fall back to the bundled icon resource, which costs nothing to
+ *     send.</li>
+ * </ul>
+ * Not thread safe; use one per data set load.
+ */
+class WidgetIconLoader {
+    private static final String LOG_TAG = WidgetIconLoader.class.getSimpleName();
+
+    private final WeatherArtCache mArtCache;
+    private final int mBudgetBytes;
+
+    // By art name; a null value marks art that failed to load or didn't fit the budget
+    private final Map<String, Bitmap> mIcons = new HashMap<String, Bitmap>();
+    private int mUsedBytes;
+    private int mShared;
+    private int mFallbacks;
+
+    /**
+     * @param budgetBytes Most bytes of bitmap the icons may take together.
+     */
+    WidgetIconLoader(Context context, int budgetBytes) {
+        mArtCache = WeatherArtCache.getInstance(context);
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the icon of a weather condition, or null to show its bundled icon resource.
+     */
+    Bitmap get(int weatherId) {
+        String artName = Utility.getArtNameForWeatherCondition(weatherId);
+        if (artName == null) {
+            return null;
+        }
+        if (mIcons.containsKey(artName)) {
+            Bitmap icon = mIcons.get(artName);
+            if (icon != null) {
+                mShared++;
+            } else {
+                mFallbacks++;
+            }
+            return icon;
+        }
+
+        // The config, and so the cost, of an icon depends on its source and whether it has
+        // alpha; it is only known once loaded.  Loading one that doesn't fit is not wasted: it
+        // stays in the art cache for the forecast list.
+        Bitmap icon = mArtCache.get(weatherId, WeatherArtCache.SIZE_LIST);
+        if (icon != null) {
+            int iconBytes = icon.getRowBytes() * icon.getHeight();
+            if (mUsedBytes + iconBytes <= mBudgetBytes) {
+                mUsedBytes += iconBytes;
+            } else {
+                icon = null;
+            }
+        }
+        if (icon == null) {
+            mFallbacks++;
+        }
+        mIcons.put(artName, icon);
+        return icon;
+    }
+
+    /**
+     * Logs what the icons of this load cost.
+     */
+    void logStats() {
+        Log.d(LOG_TAG, mIcons.size() + " distinct icons, " + mUsedBytes + " of " + mBudgetBytes
+                + " bytes, " + mShared + " rows sharing an icon, " + mFallbacks
+                + " rows falling back to resources");
+    }
+}
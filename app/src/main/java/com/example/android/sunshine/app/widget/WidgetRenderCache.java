@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.util.SparseArray;
+
+/**
+ * Remembers what each widget was last given, as a key covering everything its RemoteViews were
+ * built from, so that an update that would push the same views again can be skipped.
+ *
+ * It only lives as long as the process.  A widget it knows nothing about is always updated, so
+ * losing it costs one round of updates and never a stale widget.
+ */
+class WidgetRenderCache {
+    private final SparseArray<String> mKeys = new SparseArray<String>();
+
+    private int mSkipped;
+
+    /**
+     * @return whether the widget was last updated with views built from key.
+     */
+    synchronized boolean isCurrent(int appWidgetId, String key) {
+        return key.equals(mKeys.get(appWidgetId));
+    }
+
+    synchronized void put(int appWidgetId, String key) {
+        mKeys.put(appWidgetId, key);
+    }
+
+    synchronized void countSkipped() {
+        mSkipped++;
+    }
+
+    /**
+     * @return how many updates were skipped since the process started.
+     */
+    synchronized int getSkipped() {
+        return mSkipped;
+    }
+
+    /**
+     * Forgets every widget but the given ones, e.g. those that were deleted.
+     */
+    synchronized void retain(int[] appWidgetIds) {
+        SparseArray<String> kept = new SparseArray<String>(appWidgetIds.length);
+        for (int appWidgetId : appWidgetIds) {
+            String key = mKeys.get(appWidgetId);
+            if (key != null) {
+                kept.put(appWidgetId, key);
+            }
+        }
+        mKeys.clear();
+        for (int i = 0; i < kept.size(); i++) {
+            mKeys.put(kept.keyAt(i), kept.valueAt(i));
+        }
+    }
+}